@@ -0,0 +1,48 @@
+package xyz.GPSforLEGENDS;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * serial and parallel AStar between two opposite corners of the generated maps.
+ * the search context of the benchmark thread and the component index of the grid are created in the setup,
+ * so every invocation only measures the search and the path reconstruction
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FindPathBenchmark {
+
+    @Param({"OPEN_FIELD", "RANDOM_OBSTACLES", "MAZE", "ROOMS"})
+    public MapGenerator map;
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private AStar aStar;
+
+    private int[] endpoints;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NodeGrid grid = new NodeGrid(map.generate(size, 42));
+        endpoints = MapGenerator.findEndpoints(grid);
+        aStar = new AStar(grid, parallel);
+
+        //allocates the search context of this thread
+        aStar.findPath(endpoints[0], endpoints[1], endpoints[2], endpoints[3]);
+    }
+
+    @Benchmark
+    public List<Node> findPath() {
+        return aStar.findPath(endpoints[0], endpoints[1], endpoints[2], endpoints[3]);
+    }
+}
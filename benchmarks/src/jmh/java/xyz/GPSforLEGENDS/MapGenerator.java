@@ -0,0 +1,202 @@
+package xyz.GPSforLEGENDS;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * synthetic square maps for the benchmarks, generated from a seed so every run searches the same grid.
+ * the maps are binary images (white = traversable) that are written directly into their packed raster,
+ * an 8192 x 8192 map takes 8 MB and is generated in about a second
+ */
+public enum MapGenerator {
+
+    /**
+     * every cell is traversable, the search runs straight to the end
+     */
+    OPEN_FIELD {
+        @Override
+        void draw(Bitmap bitmap, Random random) {
+            bitmap.fill(0, 0, bitmap.size, bitmap.size, true);
+        }
+    },
+
+    /**
+     * blocked rectangles of 2 to 16 cells side length at random positions, covering about a fifth of the map
+     */
+    RANDOM_OBSTACLES {
+        @Override
+        void draw(Bitmap bitmap, Random random) {
+            bitmap.fill(0, 0, bitmap.size, bitmap.size, true);
+
+            long obstacles = (long) bitmap.size * bitmap.size / 400;
+            for (long i = 0; i < obstacles; i++) {
+                int width = 2 + random.nextInt(15);
+                int height = 2 + random.nextInt(15);
+                bitmap.fill(random.nextInt(bitmap.size), random.nextInt(bitmap.size), width, height, false);
+            }
+        }
+    },
+
+    /**
+     * perfect maze with corridors of 3 cells and walls of 1 cell, carved by a randomized depth first search.
+     * there is exactly one way between two corridors, so the search explores most of the map
+     */
+    MAZE {
+        @Override
+        void draw(Bitmap bitmap, Random random) {
+            int cells = (bitmap.size - 1) / MAZE_PITCH;
+            boolean[] visited = new boolean[cells * cells];
+            int[] stack = new int[cells * cells];
+            int[] neighbours = new int[4];
+
+            int depth = 0;
+            stack[depth++] = 0;
+            visited[0] = true;
+            openMazeCell(bitmap, 0, 0);
+
+            while (depth > 0) {
+                int cell = stack[depth - 1];
+                int x = cell % cells;
+                int y = cell / cells;
+
+                int count = 0;
+                if (x > 0 && !visited[cell - 1]) neighbours[count++] = cell - 1;
+                if (x < cells - 1 && !visited[cell + 1]) neighbours[count++] = cell + 1;
+                if (y > 0 && !visited[cell - cells]) neighbours[count++] = cell - cells;
+                if (y < cells - 1 && !visited[cell + cells]) neighbours[count++] = cell + cells;
+
+                if (count == 0) {
+                    depth--;
+                    continue;
+                }
+
+                int next = neighbours[random.nextInt(count)];
+                int nextX = next % cells;
+                int nextY = next / cells;
+                openMazeCell(bitmap, nextX, nextY);
+
+                //the wall between both cells
+                int wallX = Math.max(x, nextX) * MAZE_PITCH;
+                int wallY = Math.max(y, nextY) * MAZE_PITCH;
+                if (nextX != x) bitmap.fill(wallX, y * MAZE_PITCH + 1, 1, MAZE_PITCH - 1, true);
+                else bitmap.fill(x * MAZE_PITCH + 1, wallY, MAZE_PITCH - 1, 1, true);
+
+                visited[next] = true;
+                stack[depth++] = next;
+            }
+        }
+    },
+
+    /**
+     * rooms of 31 x 31 cells, every wall between two rooms has a door of 4 cells at a random position
+     */
+    ROOMS {
+        @Override
+        void draw(Bitmap bitmap, Random random) {
+            int rooms = (bitmap.size + ROOM_PITCH - 1) / ROOM_PITCH;
+
+            for (int roomY = 0; roomY < rooms; roomY++) {
+                for (int roomX = 0; roomX < rooms; roomX++) {
+                    int x = roomX * ROOM_PITCH;
+                    int y = roomY * ROOM_PITCH;
+                    bitmap.fill(x + 1, y + 1, ROOM_PITCH - 1, ROOM_PITCH - 1, true);
+
+                    //doors to the room on the left and the room above
+                    if (roomX > 0) bitmap.fill(x, y + 1 + random.nextInt(ROOM_PITCH - DOOR_WIDTH), 1, DOOR_WIDTH, true);
+                    if (roomY > 0) bitmap.fill(x + 1 + random.nextInt(ROOM_PITCH - DOOR_WIDTH), y, DOOR_WIDTH, 1, true);
+                }
+            }
+        }
+    };
+
+    private static final int MAZE_PITCH = 4;
+
+    private static final int ROOM_PITCH = 32;
+
+    private static final int DOOR_WIDTH = 4;
+
+    /**
+     * @param size width and height of the map, atleast 8
+     * @param seed seed of the random obstacles, maze and doors
+     * @return binary image, white pixels are traversable
+     */
+    public BufferedImage generate(int size, long seed) {
+        if (size < 8) throw new IllegalArgumentException("The map has to be atleast 8 x 8");
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_BINARY);
+        draw(new Bitmap(image), new Random(seed));
+        return image;
+    }
+
+    abstract void draw(Bitmap bitmap, Random random);
+
+    /**
+     * finds two connected cells close to opposite corners of the grid, so the search between them crosses the whole map
+     * @return the start x, start y, end x and end y
+     * @exception IllegalStateException if the grid has no traversable cell on its diagonal
+     */
+    public static int[] findEndpoints(NodeGrid grid) {
+        int size = Math.min(grid.getWidth(), grid.getHeight());
+
+        int end = -1;
+        for (int i = size - 1; i >= 0 && end < 0; i--) {
+            if (grid.isTraversable(grid.index(i, i))) end = i;
+        }
+
+        for (int start = 0; start < size && end >= 0; start++) {
+            if (grid.isTraversable(grid.index(start, start)) && grid.isReachable(start, start, end, end)) {
+                return new int[]{start, start, end, end};
+            }
+        }
+        throw new IllegalStateException("The grid has no connected cells on its diagonal");
+    }
+
+    private static void openMazeCell(Bitmap bitmap, int x, int y) {
+        bitmap.fill(x * MAZE_PITCH + 1, y * MAZE_PITCH + 1, MAZE_PITCH - 1, MAZE_PITCH - 1, true);
+    }
+
+    /**
+     * the packed raster of a TYPE_BYTE_BINARY image, the highest bit of every byte is the leftmost pixel and 1 is white
+     */
+    static final class Bitmap {
+
+        private final int size;
+
+        private final int bytesPerRow;
+
+        private final byte[] data;
+
+        Bitmap(BufferedImage image) {
+            this.size = image.getWidth();
+            this.bytesPerRow = (size + 7) / 8;
+            this.data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        }
+
+        /**
+         * sets the rectangle, the parts outside of the map are ignored
+         */
+        void fill(int x, int y, int width, int height, boolean white) {
+            int lastX = Math.min(size, x + width);
+            int lastY = Math.min(size, y + height);
+
+            for (int row = Math.max(0, y); row < lastY; row++) {
+                int offset = row * bytesPerRow;
+
+                //whole bytes at once, the pixels at both ends one by one
+                int pixel = Math.max(0, x);
+                for (; pixel < lastX && (pixel & 7) != 0; pixel++) set(offset, pixel, white);
+                int wholeBytes = (lastX - pixel) / 8;
+                Arrays.fill(data, offset + pixel / 8, offset + pixel / 8 + Math.max(0, wholeBytes), white ? (byte) 0xFF : 0);
+                for (pixel += Math.max(0, wholeBytes) * 8; pixel < lastX; pixel++) set(offset, pixel, white);
+            }
+        }
+
+        private void set(int offset, int x, boolean white) {
+            int mask = 0x80 >>> (x & 7);
+            int index = offset + x / 8;
+            data[index] = (byte) (white ? data[index] | mask : data[index] & ~mask);
+        }
+    }
+}
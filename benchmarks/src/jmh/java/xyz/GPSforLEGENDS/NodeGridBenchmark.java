@@ -0,0 +1,52 @@
+package xyz.GPSforLEGENDS;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * construction of a NodeGrid from an image, and the reset of the search context before every search
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NodeGridBenchmark {
+
+    @Param({"OPEN_FIELD", "RANDOM_OBSTACLES", "MAZE", "ROOMS"})
+    public MapGenerator map;
+
+    @Param({"1024", "4096"})
+    public int size;
+
+    private BufferedImage image;
+
+    private SearchContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = map.generate(size, 42);
+        context = new NodeGrid(image).acquireSearchContext();
+    }
+
+    /**
+     * reads the raster and builds the bitset and neighbour masks in parallel on the common fork join pool
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public NodeGrid construct() {
+        return new NodeGrid(image);
+    }
+
+    /**
+     * only increments the generation, independent of the size of the grid
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SearchContext reset() {
+        context.reset();
+        return context;
+    }
+}
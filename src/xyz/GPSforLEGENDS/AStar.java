@@ -1,10 +1,12 @@
 package xyz.GPSforLEGENDS;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implementation of the AStar pathfinding algorithm with up to 2 threads searching
@@ -14,10 +16,49 @@ import java.util.concurrent.*;
  */
 public class AStar {
 
+    //default executor for the pathworker from the end in parallel mode, the threads are reused between searches
+    private static final Executor SHARED_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "AStar-PathWorker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //cluster size of the hierarchical graph that is built if none was set
+    private static final int DEFAULT_CLUSTER_SIZE = 32;
+
+    //number of landmarks that are computed if none were set
+    private static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    //completes the futures of findPathAsync at their deadline, also if the search has not started yet
+    private static final ScheduledExecutorService TIMEOUTS = createTimeoutExecutor();
+
+    //number of goals whose flow fields are cached
+    private static final int FLOW_FIELD_CACHE_SIZE = 16;
+
     private boolean parallel;
 
     private NodeGrid grid;
 
+    private OpenListType openListType;
+
+    private Executor executor;
+
+    private SearchAlgorithm algorithm = SearchAlgorithm.ASTAR;
+
+    private HierarchicalGraph hierarchicalGraph;
+
+    private Landmarks landmarks;
+
+    //flow fields by goal cell, in access order. a field is computed by the task outside of the lock of the map
+    private final Map<Integer, FutureTask<FlowField>> flowFields = new LinkedHashMap<>(16, 0.75f, true);
+
+    //number of workers of SearchAlgorithm.HASH_DISTRIBUTED
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private PathCache pathCache;
+
+    private volatile SearchListener searchListener;
+
     /**
      * Constructor
      * @param grid the grid to run the pathfinding search on
@@ -32,14 +73,204 @@ public class AStar {
      * @param parallel if true then the pathfinding Algorithm will run with 2 threads
      */
     public AStar(NodeGrid grid, boolean parallel){
+        this(grid, parallel, OpenListType.DARY_HEAP);
+    }
+
+    /**
+     * Constructor
+     * @param grid the grid to run the pathfinding search on
+     * @param parallel if true then the pathfinding Algorithm will run with 2 threads
+     * @param openListType the implementation of the open list used by the search, not null
+     * @see OpenListType
+     */
+    public AStar(NodeGrid grid, boolean parallel, OpenListType openListType){
+        this(grid, parallel, openListType, SHARED_EXECUTOR);
+    }
+
+    /**
+     * Constructor
+     * @param grid the grid to run the pathfinding search on
+     * @param parallel if true then the pathfinding Algorithm will run with 2 threads
+     * @param openListType the implementation of the open list used by the search, not null
+     * @param executor runs the pathworker from the end in parallel mode, the pathworker from the start runs on the calling thread. not null
+     * @see #newVirtualThreadExecutor()
+     */
+    public AStar(NodeGrid grid, boolean parallel, OpenListType openListType, Executor executor){
+        if(openListType == null) throw new NullPointerException("OpenListType openListType cant be null");
+        if(executor == null) throw new NullPointerException("Executor executor cant be null");
+
         this.parallel = parallel;
         this.grid = grid;
+        this.openListType = openListType;
+        this.executor = executor;
+    }
+
+    private static ScheduledExecutorService createTimeoutExecutor(){
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "AStar-Timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //most queries finish before their deadline, their cancelled timeouts are removed right away
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * creates an executor that starts a new virtual thread for every task
+     * @return the executor, has to be shut down by the caller
+     * @exception UnsupportedOperationException if the jvm does not support virtual threads (Java 21 or newer)
+     */
+    public static ExecutorService newVirtualThreadExecutor(){
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this jvm", e);
+        }
+    }
+
+    /**
+     * sets the algorithm that is used by all following searches. the default is SearchAlgorithm.ASTAR
+     * @param algorithm not null
+     * @exception IllegalArgumentException if the algorithm is SearchAlgorithm.JUMP_POINT_SEARCH and the grid is weighted
+     */
+    public void setAlgorithm(SearchAlgorithm algorithm){
+        if(algorithm == null) throw new NullPointerException("SearchAlgorithm algorithm cant be null");
+
+        //the pruning rules of jump point search are only valid if every cell costs the same
+        if(algorithm == SearchAlgorithm.JUMP_POINT_SEARCH && grid.isWeighted()){
+            throw new IllegalArgumentException("Jump point search does not support weighted grids");
+        }
+
+        this.algorithm = algorithm;
+    }
+
+    public SearchAlgorithm getAlgorithm(){
+        return algorithm;
+    }
+
+    /**
+     * sets the number of threads that search a single query with SearchAlgorithm.HASH_DISTRIBUTED.
+     * the default is the number of available processors
+     * one of them is the calling thread, the others run on the executor of this AStar. workers the executor does not start in time are run by the calling thread
+     * @param threads atleast 1
+     * @exception IllegalArgumentException if threads is lower than 1
+     */
+    public void setThreads(int threads){
+        if(threads < 1) throw new IllegalArgumentException("Atleast one thread is needed");
+
+        this.threads = threads;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
+    /**
+     * sets the graph that is used by SearchAlgorithm.HIERARCHICAL.
+     * if no graph is set, a graph with a cluster size of 32 is built on the first hierarchical search
+     * @param hierarchicalGraph a graph of the grid of this AStar, not null
+     */
+    public synchronized void setHierarchicalGraph(HierarchicalGraph hierarchicalGraph){
+        if(hierarchicalGraph == null) throw new NullPointerException("HierarchicalGraph hierarchicalGraph cant be null");
+        if(hierarchicalGraph.getGrid() != grid) throw new IllegalArgumentException("The hierarchical graph was built for another grid");
+
+        this.hierarchicalGraph = hierarchicalGraph;
+    }
+
+    /**
+     * @return the graph used by SearchAlgorithm.HIERARCHICAL, built if none was set yet, and the changed clusters rebuilt if the grid changed
+     */
+    public HierarchicalGraph getHierarchicalGraph(){
+        return getHierarchicalGraph(null);
+    }
+
+    /**
+     * @param control the deadline of the search that needs the graph, null if it is built until it is finished
+     * @return the graph, null if the control stopped building or updating it
+     */
+    private synchronized HierarchicalGraph getHierarchicalGraph(SearchControl control){
+        if(hierarchicalGraph == null){
+            HierarchicalGraph graph = new HierarchicalGraph(grid, DEFAULT_CLUSTER_SIZE, control);
+            if(control != null && control.isStopped()) return null;
+
+            hierarchicalGraph = graph;
+        }
+        else if(hierarchicalGraph.isOutdated() && !hierarchicalGraph.update(control)){
+            return null;
+        }
+        return hierarchicalGraph;
+    }
+
+    /**
+     * sets the landmarks that are used by SearchAlgorithm.ALT.
+     * if none are set, 8 landmarks are computed on the first ALT search
+     * @param landmarks landmarks of the grid of this AStar, e.g. opened with Landmarks.open. not null
+     */
+    public synchronized void setLandmarks(Landmarks landmarks){
+        if(landmarks == null) throw new NullPointerException("Landmarks landmarks cant be null");
+        if(landmarks.getGrid() != grid) throw new IllegalArgumentException("The landmarks were computed for another grid");
+
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * @return the landmarks used by SearchAlgorithm.ALT. computed if none were set yet, and computed again with the same count
+     * if a cell of the grid changed since they were computed
+     */
+    public Landmarks getLandmarks(){
+        return getLandmarks(null);
+    }
+
+    /**
+     * @param control the deadline of the search that needs the landmarks, null if they are computed until it is finished
+     * @return the landmarks, null if the control stopped computing them
+     */
+    private synchronized Landmarks getLandmarks(SearchControl control){
+        if(landmarks == null || landmarks.isOutdated()){
+            Landmarks computed = new Landmarks(grid, landmarks == null ? DEFAULT_LANDMARK_COUNT : landmarks.getCount(), control);
+            if(control != null && control.isStopped()) return null;
+
+            landmarks = computed;
+        }
+        return landmarks;
+    }
+
+    /**
+     * sets the cache that answers queries of all following searches before they are searched, null to search every query.
+     * paths of SearchAlgorithm.HIERARCHICAL and of an open list that is not exact, e.g. OpenListType.COARSE_BUCKET_QUEUE,
+     * are neither cached nor answered from the cache, since they are not always the shortest ones
+     * @param pathCache a cache of the grid of this AStar, can be shared with other AStar instances of the grid. null removes the cache
+     * @exception IllegalArgumentException if the cache belongs to another grid
+     */
+    public void setPathCache(PathCache pathCache){
+        if(pathCache != null && pathCache.getGrid() != grid) throw new IllegalArgumentException("The path cache belongs to another grid");
+
+        this.pathCache = pathCache;
+    }
+
+    public PathCache getPathCache(){
+        return pathCache;
+    }
+
+    /**
+     * sets the listener that receives the SearchStats of every following search, e.g. SearchMetrics. null removes the listener.
+     * the statistics are also attached to every PathResult
+     * @param searchListener is called on the thread that ran the search, null to report nothing
+     */
+    public void setSearchListener(SearchListener searchListener){
+        this.searchListener = searchListener;
+    }
+
+    public SearchListener getSearchListener(){
+        return searchListener;
     }
 
     /**
      * finds the shortest path from start to end.
-     * If you want to call this function a second time, make sure to reset the grid to its original state by calling NodeGrid.reset();
-     * @see NodeGrid#reset()
+     * The grid is not changed by the search, so this function can be called any number of times and from many threads at the same time.
+     * start and end in different connected components are rejected without a search, see NodeGrid.isReachable
      * @param startX
      * @param startY
      * @param endX
@@ -49,77 +280,510 @@ public class AStar {
      */
     public List<Node> findPath(int startX, int startY, int endX, int endY){
 
-        Node start = grid.getNode(startX,startY);
-        Node end = grid.getNode(endX,endY);
+        if(!grid.contains(startX, startY) || !grid.contains(endX, endY)) throw new IllegalArgumentException("The start or end coordinates are outside of the grid");
+
+        int start = grid.index(startX, startY);
+        int end = grid.index(endX, endY);
+
+        if(!grid.isTraversable(start) || !grid.isTraversable(end)) throw new IllegalArgumentException("The start or end node is not traversable");
+
+        return search(new PathQuery(startX, startY, endX, endY), start, end, parallel, null, null).getPath();
+    }
+
+    /**
+     * finds the shortest path from start to end like findPath and writes its cells into the buffer instead of a list.
+     * no Node objects are created, a buffer that is reused for many searches makes the path extraction allocation free.
+     * without a search listener no result and no statistics are created either
+     * @param buffer receives the path from start to end, it is empty if no path was found. not null
+     * @return true if a path was found
+     * @exception IllegalArgumentException if coordinates are outside of the grid or are not traversable
+     */
+    public boolean findPath(int startX, int startY, int endX, int endY, PathBuffer buffer){
+        if(buffer == null) throw new NullPointerException("PathBuffer buffer cant be null");
+
+        if(!grid.contains(startX, startY) || !grid.contains(endX, endY)) throw new IllegalArgumentException("The start or end coordinates are outside of the grid");
+
+        int start = grid.index(startX, startY);
+        int end = grid.index(endX, endY);
+
+        if(!grid.isTraversable(start) || !grid.isTraversable(end)) throw new IllegalArgumentException("The start or end node is not traversable");
+
+        //without a query the search creates no result, and no statistics unless a listener wants them
+        search(null, start, end, parallel, null, buffer);
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * finds the shortest path for the query on the common fork join pool
+     * @see #findPathAsync(PathQuery, long, TimeUnit, Executor)
+     */
+    public CompletableFuture<PathResult> findPathAsync(PathQuery query, long timeout, TimeUnit unit){
+        return findPathAsync(query, timeout, unit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * finds the shortest path for the query on a thread of the executor, with the parallel setting and algorithm of this AStar.
+     * the search stops within a few hundred cells after the deadline passed or the future was completed by the caller, e.g. cancelled.
+     * a search that stopped at its deadline gets the status TIMED_OUT and the path from the start to the explored node closest to the end.
+     * the future is completed at the deadline in any case: a query that still waits for a thread or is prepared,
+     * e.g. the landmarks or the hierarchical graph are computed after the grid changed, gets TIMED_OUT without a path, and its preparation stops as well.
+     * an exception of the search completes the future exceptionally
+     * @param query not null
+     * @param timeout the time from now until the deadline, the time the query waits for a thread counts as well. Long.MAX_VALUE for no deadline
+     * @param unit the unit of the timeout, not null
+     * @param executor the executor that runs the search, not null
+     * @return the future of the result. Invalid queries get the status INVALID_COORDINATES
+     */
+    public CompletableFuture<PathResult> findPathAsync(PathQuery query, long timeout, TimeUnit unit, Executor executor){
+        if(query == null) throw new NullPointerException("PathQuery query cant be null");
+        if(unit == null) throw new NullPointerException("TimeUnit unit cant be null");
+        if(executor == null) throw new NullPointerException("Executor executor cant be null");
+
+        long nanos = unit.toNanos(timeout);
+        SearchControl control = new SearchControl(nanos);
+        CompletableFuture<PathResult> future = new CompletableFuture<>();
+
+        //the future is completed at the deadline even if the query still waits for a thread or is prepared
+        if(nanos != Long.MAX_VALUE){
+            ScheduledFuture<?> timeoutTask = TIMEOUTS.schedule(() -> future.complete(new PathResult(query, PathResult.Status.TIMED_OUT, null)), nanos, TimeUnit.NANOSECONDS);
+            future.whenComplete((result, failure) -> timeoutTask.cancel(false));
+        }
+
+        //a future that is cancelled or completed by the caller stops the search at its next check
+        future.whenComplete((result, failure) -> control.cancel());
+
+        executor.execute(() -> {
+            if(future.isDone()) return;
+
+            try {
+                future.complete(findPath(query, parallel, control));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * finds the shortest paths for all queries.
+     * the queries are distributed over the threads of the common fork join pool
+     * @see #findPaths(List, Executor)
+     * @param queries not null
+     * @return the results in the same order as the queries
+     */
+    public List<PathResult> findPaths(List<PathQuery> queries){
+        return findPaths(queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * finds the shortest paths for all queries.
+     * every query is searched by one thread of the executor, independent of the parallel setting of this AStar.
+     * the searches borrow their search contexts from the grid, so the threads share a few of them
+     * @param queries not null
+     * @param executor the executor that runs the searches, not null
+     * @return the results in the same order as the queries. Invalid queries dont throw an exception but get the status INVALID_COORDINATES
+     */
+    public List<PathResult> findPaths(List<PathQuery> queries, Executor executor){
+        if(queries == null) throw new NullPointerException("List<PathQuery> queries cant be null");
+        if(executor == null) throw new NullPointerException("Executor executor cant be null");
+
+        List<CompletableFuture<PathResult>> futures = new ArrayList<>(queries.size());
+        for(PathQuery query : queries){
+            futures.add(CompletableFuture.supplyAsync(() -> findPath(query, false, null), executor));
+        }
+
+        List<PathResult> results = new ArrayList<>(queries.size());
+        for(CompletableFuture<PathResult> future : futures){
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * returns the flow field of the goal, for many agents that share it. every agent reads its path from the field instead of searching it.
+     * the fields of the last 16 goals are cached, a field is computed again if a cell of the grid changed since it was computed.
+     * the field is computed by the first caller for the goal, in parallel with getThreads() threads if this AStar is parallel,
+     * one of them is the calling thread and the others run on the executor of this AStar. the packing of the directions runs on the common fork join pool.
+     * calls for the same goal wait for the field, calls for other goals dont
+     * @param goalX x coordinate of the goal
+     * @param goalY y coordinate of the goal
+     * @return the flow field to the goal
+     * @exception IllegalArgumentException if the goal is outside of the grid or not traversable
+     */
+    public FlowField getFlowField(int goalX, int goalY){
+        if(!grid.contains(goalX, goalY)) throw new IllegalArgumentException("The goal coordinates are outside of the grid");
+
+        int goal = grid.index(goalX, goalY);
+        if(!grid.isTraversable(goal)) throw new IllegalArgumentException("The goal node is not traversable");
+
+        int searchThreads = parallel ? threads : 1;
+        while(true){
+            FutureTask<FlowField> task;
+            boolean compute = false;
+            synchronized (flowFields){
+                task = flowFields.get(goal);
+                if(task == null || task.isDone() && isOutdated(task)){
+                    task = new FutureTask<>(() -> FlowField.compute(grid, goal, searchThreads, executor));
+                    flowFields.put(goal, task);
+                    compute = true;
+
+                    //the least recently used field
+                    if(flowFields.size() > FLOW_FIELD_CACHE_SIZE) flowFields.remove(flowFields.keySet().iterator().next());
+                }
+            }
+
+            if(compute) task.run();
+
+            //a field computed while the grid changed is computed again
+            FlowField flowField = await(task);
+            if(!flowField.isOutdated()) return flowField;
+        }
+    }
+
+    /**
+     * @param task a finished task
+     * @return true if the field of the task is outdated or could not be computed
+     */
+    private static boolean isOutdated(FutureTask<FlowField> task){
+        try {
+            return task.get().isOutdated();
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            return true;
+        }
+    }
+
+    /**
+     * waits for the field uninterruptibly, since the task of another caller might compute it
+     * @exception RuntimeException the exception of the computation
+     */
+    private static FlowField await(FutureTask<FlowField> task){
+        boolean interrupted = false;
+        try {
+            while(true){
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if(cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * computes the shortest distances between all pairs of the points.
+     * the points are distributed over the threads of the common fork join pool
+     * @see #findDistances(List, ForkJoinPool)
+     * @param points not null
+     * @return the distance matrix
+     */
+    public DistanceMatrix findDistances(List<Node> points){
+        return findDistances(points, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * computes the shortest distances between all pairs of the points.
+     * instead of a search for every pair there is one Dijkstra search per point, which stops as soon as it reached all other points.
+     * the searches run in parallel on the pool, the algorithm and the parallel setting of this AStar are not used
+     * @param points nodes of the grid of this AStar, e.g. from NodeGrid.getNode. not null
+     * @param pool the pool that runs the searches, not null
+     * @return the distance matrix, the paths are searched on demand
+     * @exception IllegalArgumentException if a point is not traversable or belongs to another grid
+     */
+    public DistanceMatrix findDistances(List<Node> points, ForkJoinPool pool){
+        if(points == null) throw new NullPointerException("List<Node> points cant be null");
+        if(pool == null) throw new NullPointerException("ForkJoinPool pool cant be null");
+
+        for(Node point : points){
+            if(point == null) throw new NullPointerException("Node point cant be null");
+            if(point.getGrid() != grid || !point.isTraversable()){
+                throw new IllegalArgumentException("The point " + point.getX() + ", " + point.getY() + " is not a traversable node of the grid");
+            }
+        }
+
+        return DistanceMatrix.compute(grid, points, pool);
+    }
+
+    /**
+     * @param control the deadline of the search, null if it runs until it is finished
+     */
+    private PathResult findPath(PathQuery query, boolean parallel, SearchControl control){
+        if(!grid.contains(query.getStartX(), query.getStartY()) || !grid.contains(query.getEndX(), query.getEndY())){
+            return new PathResult(query, PathResult.Status.INVALID_COORDINATES, null);
+        }
 
-        if(start == null || end == null) throw new IllegalArgumentException("The start or end coordinates are outside of the grid");
+        int start = grid.index(query.getStartX(), query.getStartY());
+        int end = grid.index(query.getEndX(), query.getEndY());
 
-        if(!start.isTraversable() || !end.isTraversable()) throw new IllegalArgumentException("The start or end node is not traversable");
+        if(!grid.isTraversable(start) || !grid.isTraversable(end)){
+            return new PathResult(query, PathResult.Status.INVALID_COORDINATES, null);
+        }
+
+        //the deadline passed while the query waited for a thread
+        if(control != null && control.shouldStop()){
+            return new PathResult(query, PathResult.Status.TIMED_OUT, null);
+        }
+
+        return search(query, start, end, parallel, control, null);
+    }
+
+    /**
+     * runs the search with a search context borrowed from the grid and reports its statistics to the search listener
+     * @param query the query of the result, null if no result is wanted. the statistics are only collected for a result or a listener then
+     * @param control the deadline of the search, null if it runs until it is finished
+     * @param buffer receives the path, null to return the path as a list of the result instead
+     * @return the result with the status FOUND, UNREACHABLE or TIMED_OUT and the statistics of the search, null if query is null
+     */
+    private PathResult search(PathQuery query, int start, int end, boolean parallel, SearchControl control, PathBuffer buffer){
+        long begin = System.nanoTime();
+        boolean toList = buffer == null;
+        boolean collect = query != null || searchListener != null;
+        long[] nanos = collect ? new long[SearchStats.Phase.values().length] : null;
+        SearchAlgorithm algorithm = this.algorithm;
+
+        //a search between two components would only end after it explored the whole component of the start
+        boolean connected = grid.isConnected(start, end);
+
+        //the cache answers subpaths, that is only correct for shortest paths
+        PathCache cache = algorithm == SearchAlgorithm.HIERARCHICAL || !openListType.isExact() ? null : pathCache;
+        int[] cachedCells = connected && cache != null ? cache.get(start, end) : null;
+
+        if(!connected || cachedCells != null){
+            int length = cachedCells == null ? 0 : cachedCells.length;
+            if(!toList){
+                buffer.clear(grid);
+                if(cachedCells != null) buffer.copyFrom(cachedCells);
+            }
+            if(!collect) return null;
+
+            nanos[SearchStats.Phase.PREPARATION.ordinal()] = System.nanoTime() - begin;
+            PathResult.Status status = length == 0 ? PathResult.Status.UNREACHABLE : PathResult.Status.FOUND;
+            List<Node> path = toList && length > 0 ? toNodes(cachedCells) : null;
+            return report(query, status, path, new SearchStats(grid, algorithm, 0, start, end, status, length > 0, length, null, nanos));
+        }
+
+        //the landmarks and the graph are prepared with their own search contexts, so before the search borrows one
+        Landmarks altLandmarks = algorithm == SearchAlgorithm.ALT ? getLandmarks(control) : null;
+        HierarchicalGraph graph = algorithm == SearchAlgorithm.HIERARCHICAL ? getHierarchicalGraph(control) : null;
+
+        //the deadline passed while the query was prepared
+        if(control != null && control.shouldStop()){
+            if(!toList) buffer.clear(grid);
+            if(!collect) return null;
 
-        //2 threads
-        if(parallel){
-            parallelPathworkerSearch(start, end);
-            return reconstructPath(start, end);
+            nanos[SearchStats.Phase.PREPARATION.ordinal()] = System.nanoTime() - begin;
+            PathResult.Status status = PathResult.Status.TIMED_OUT;
+            return report(query, status, null, new SearchStats(grid, algorithm, 0, start, end, status, false, 0, null, nanos));
         }
-        //one thread
-        else{
-            pathworkerSearch(start, end);
-            return reconstructPath(start, end);
+
+        SearchContext context = grid.acquireSearchContext();
+        List<Node> path;
+        PathResult.Status status;
+        SearchStats stats;
+        try {
+            context.reset();
+            context.clearWork();
+            context.setControl(control);
+            //the path of a list is only needed until the nodes are created, the buffer of the context is reused for it
+            if(toList) buffer = context.getPathBuffer();
+
+            int searchThreads = 1;
+            long searchBegin = System.nanoTime();
+            if(collect) nanos[SearchStats.Phase.PREPARATION.ordinal()] = searchBegin - begin;
+
+            if(algorithm == SearchAlgorithm.JUMP_POINT_SEARCH){
+                jumpPointSearch(context, start, end);
+            }
+            else if(algorithm == SearchAlgorithm.HIERARCHICAL){
+                graph.search(context, start, end, openListType);
+            }
+            else if(algorithm == SearchAlgorithm.ALT){
+                altSearch(context, start, end, altLandmarks);
+            }
+            //n threads, only one if the queries are already distributed over threads
+            else if(algorithm == SearchAlgorithm.HASH_DISTRIBUTED){
+                searchThreads = parallel ? threads : 1;
+                new HashDistributedSearch(grid, context, start, end, searchThreads).search(executor);
+            }
+            //2 threads
+            else if(parallel){
+                searchThreads = 2;
+                parallelPathworkerSearch(context, start, end);
+            }
+            //one thread
+            else{
+                pathworkerSearch(context, start, end);
+            }
+
+            long reconstructionBegin = System.nanoTime();
+            if(collect) nanos[SearchStats.Phase.SEARCH.ordinal()] = reconstructionBegin - searchBegin;
+
+            //the path of a stopped search is not always the shortest one, so it is only a partial path
+            if(control != null && control.isStopped()){
+                status = PathResult.Status.TIMED_OUT;
+                reconstructPartialPath(context, buffer);
+            }
+            else{
+                status = reconstructPath(context, buffer) ? PathResult.Status.FOUND : PathResult.Status.UNREACHABLE;
+
+                if(cache != null && status == PathResult.Status.FOUND) cache.put(buffer.toArray());
+            }
+            path = toList && !buffer.isEmpty() ? buffer.toNodes() : null;
+            if(!collect) return null;
+
+            nanos[SearchStats.Phase.RECONSTRUCTION.ordinal()] = System.nanoTime() - reconstructionBegin;
+            stats = new SearchStats(grid, algorithm, searchThreads, start, end, status, false, buffer.length(), context, nanos);
+        } finally {
+            grid.releaseSearchContext(context);
+        }
+
+        return report(query, status, path, stats);
+    }
+
+    /**
+     * passes the statistics to the search listener
+     * @return the result of the search, null if no query is given
+     */
+    private PathResult report(PathQuery query, PathResult.Status status, List<Node> path, SearchStats stats){
+        SearchListener listener = searchListener;
+        if(listener != null) listener.searchFinished(stats);
+
+        return query == null ? null : new PathResult(query, status, path, stats);
+    }
+
+    private List<Node> toNodes(int[] cells){
+        List<Node> path = new ArrayList<>(cells.length);
+        for(int cell : cells){
+            path.add(grid.getNode(cell));
         }
+        return path;
     }
 
-    private void pathworkerSearch(Node start, Node end) {
+    private void pathworkerSearch(SearchContext context, int start, int end) {
         //setting up the predecessors
-        PathWorker worker = new PathWorker(grid, start, end, true);
+        PathWorker worker = new PathWorker(grid, context, start, end, true, openListType);
         //just call call, since it is one thread anyways;
+        worker.call();
+    }
+
+    private void altSearch(SearchContext context, int start, int end, Landmarks landmarks) {
+        new PathWorker(grid, context, start, end, openListType, landmarks).call();
+    }
+
+    private void jumpPointSearch(SearchContext context, int start, int end) {
+        new JumpPointWorker(grid, context, start, end, openListType).call();
+    }
+
+    private void parallelPathworkerSearch(SearchContext context, int start, int end) {
+        PathWorker workerFromStart = new PathWorker(grid, context, start, end, true, openListType);
+        PathWorker workerFromEnd = new PathWorker(grid, context, end, start, false, openListType);
+
+        //the worker from the end only runs if it is started before the worker from the start is finished
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        FutureTask<Void> task = new FutureTask<>(() -> claimed.compareAndSet(false, true) ? workerFromEnd.call() : null);
+        executor.execute(task);
+
         try {
-            worker.call();
-        } catch (Exception e) {
-            e.printStackTrace();
+            workerFromStart.call();
+        } finally {
+            //stops the worker from the end if the worker from the start failed
+            context.getAndSetSolved(true);
+
+            //the worker from the end is already running, wait for it since it shares the search context
+            if(!claimed.compareAndSet(false, true)) awaitWorker(task);
         }
     }
 
-    private void parallelPathworkerSearch(Node start, Node end) {
-        PathWorker workerFromStart = new PathWorker(grid, start, end, true);
-        PathWorker workerFromEnd = new PathWorker(grid, end, start, false);
-
-        ExecutorService pool = Executors.newFixedThreadPool(2);
+    /**
+     * waits until the task is finished, an interrupt does not stop the wait and is restored afterwards
+     * @exception RuntimeException the exception of the task
+     */
+    private static void awaitWorker(FutureTask<Void> task){
+        boolean interrupted = false;
         try {
-            pool.invokeAll(Arrays.asList(workerFromStart, workerFromEnd), 60, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            while(true){
+                try {
+                    task.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if(cause instanceof Error) throw (Error) cause;
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if(interrupted) Thread.currentThread().interrupt();
         }
-        pool.shutdown();
     }
 
     /**
-     * reconstructs the path by following the predecessors. The trackback starts at the end node.
-     * returns null if no path was found
-     * @param start
-     * @param end
-     * @return list with the nodes from start to end. null if no path was found
+     * reconstructs the path by following the predecessors. The trackback starts at the meeting point of both searches,
+     * which is the end node if only one thread was searching.
+     * both halves are counted first, so the cells are written in order without reversing and Node objects are not needed
+     * @param context the state of the finished search
+     * @param buffer receives the cells from start to end, empty if no path was found
+     * @return true if a path was found
      */
-    private List<Node> reconstructPath(Node start, Node end) {
+    private boolean reconstructPath(SearchContext context, PathBuffer buffer) {
+        buffer.clear(grid);
+
+        int meetingPoint = context.getMeetingPoint();
 
         //check if path exist
-        if(Double.isNaN(start.getCostToReach(true)) || Double.isNaN(end.getCostToReach(true))){
-            return null;
+        if(meetingPoint < 0){
+            return false;
         }
 
-        List<Node> path = new ArrayList<>();
-        Node current = start;
-        if(current.getPredecessor(true) == null) current = end;
+        writePath(context, meetingPoint, true, buffer);
+        return true;
+    }
+
+    /**
+     * the partial path of a search that was stopped by its deadline: the best path found so far,
+     * otherwise the path from the start to the frontier of the search
+     * @param context the state of the stopped search
+     * @param buffer receives the cells from the start, empty if the algorithm does not track its frontier
+     */
+    private void reconstructPartialPath(SearchContext context, PathBuffer buffer) {
+        if(reconstructPath(context, buffer)) return;
+
+        int frontier = context.getFrontier();
+        if(frontier >= 0) writePath(context, frontier, false, buffer);
+    }
 
-        while(current != null){
-            path.add(current);
-            current = current.getPredecessor(true);
+    /**
+     * writes the path through the cell into the buffer
+     * @param toEnd true to follow the predecessors of the search from the end after the cell, false to end the path at the cell
+     */
+    private void writePath(SearchContext context, int cell, boolean toEnd, PathBuffer buffer) {
+        int fromStart = 0;
+        for(int current = context.getPredecessor(cell, true); current >= 0; current = context.getPredecessor(current, true)){
+            fromStart++;
         }
+        int fromEnd = 0;
+        for(int current = toEnd ? context.getPredecessor(cell, false) : -1; current >= 0; current = context.getPredecessor(current, false)){
+            fromEnd++;
+        }
+        buffer.setLength(fromStart + 1 + fromEnd);
 
-        //reverse list if we tracked back from end to start
-        if(start.getPredecessor(true) == null){
-            Collections.reverse(path);
+        //from the cell back to the start
+        int node = fromStart;
+        for(int current = cell; current >= 0; current = context.getPredecessor(current, true)){
+            buffer.set(node--, current);
         }
 
-        return path;
+        //from the cell to the end
+        node = fromStart + 1;
+        for(int current = toEnd ? context.getPredecessor(cell, false) : -1; current >= 0; current = context.getPredecessor(current, false)){
+            buffer.set(node++, current);
+        }
     }
 }
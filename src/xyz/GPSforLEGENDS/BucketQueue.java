@@ -0,0 +1,298 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * bucket queue over cell indices for searches with integer costs (Dial's algorithm)
+ * every bucket holds the priorities with the same priority >> shift, so insert, priority change and removal are O(1).
+ * the costs are fixed point integers (1000 for a straight step, up to 255 times more on weighted grids), so most buckets of width 1 are empty.
+ * poll finds the next non empty bucket in a two level bitmap of the buckets instead of visiting them one by one,
+ * 64 buckets per word and 4096 per word of the summary.
+ * with shift 0 the queue is exact, the default. wider buckets are opt in (OpenListType.COARSE_BUCKET_QUEUE):
+ * the cells of a bucket are returned in last in first out order, so a cell can be expanded before a cell with a priority
+ * that is up to the bucket width lower, and the path is not always the shortest one.
+ * the buckets form a ring that only spans the priorities between the lowest and the highest cell in the queue.
+ * with a consistent heuristic that is at most about twice the cost of the most expensive step, the ring grows if it is not large enough
+ */
+class BucketQueue implements OpenList {
+
+    // bucket width of 64 cost units of the coarse queue, a sixteenth of the cheapest step
+    static final int COARSE_SHIFT = 6;
+
+    // number of low bits of the priority that are ignored, the buckets are 1 << shift wide
+    private final int shift;
+
+    // ring of buckets, the length is a power of two
+    private int[][] buckets = new int[64][];
+    private int[] bucketSizes = new int[64];
+
+    // priority >> shift of the cells in every non empty bucket
+    private long[] bucketKeys = new long[64];
+
+    private int ringMask = 63;
+
+    // bit b is set if bucket b is not empty, and bit w of the summary if word w of the bitmap is not 0
+    private long[] occupied = new long[1];
+    private long[] summary = new long[1];
+
+    // bucket + 1 for every cell, 0 = not in the queue
+    private final int[] bucketOf;
+
+    // position of every cell inside of its bucket
+    private final int[] slot;
+
+    // lowest priority >> shift that might be in the queue
+    private long lowest;
+
+    // highest priority >> shift that has been inserted since the queue was empty the last time
+    private long highest;
+
+    private int size;
+
+    // counters since the last clear, see OpenList
+    private long pushes, pops, decreaseKeys;
+    private int peakSize;
+
+    /**
+     * Constructor of an exact queue
+     * @param cells number of cells of the grid
+     */
+    BucketQueue(int cells){
+        this(cells, 0);
+    }
+
+    /**
+     * Constructor
+     * @param cells number of cells of the grid
+     * @param shift the buckets are 1 << shift cost units wide, 0 for an exact queue
+     */
+    BucketQueue(int cells, int shift){
+        if(shift < 0 || shift > 30) throw new IllegalArgumentException("The shift has to be between 0 and 30");
+
+        this.bucketOf = new int[cells];
+        this.slot = new int[cells];
+        this.shift = shift;
+    }
+
+    /**
+     * @param priority has to be >= 0
+     * @param heuristic is ignored, cells in the same bucket are returned in last in first out order,
+     *                  which prefers the cells found last and approximates the tie breaking of the heap.
+     *                  a cell that stays in its bucket keeps its position
+     */
+    @Override
+    public void insertOrUpdate(int cell, long priority, long heuristic) {
+        if(priority < 0) throw new IllegalArgumentException("The priority cant be negative");
+
+        long key = priority >> shift;
+        int oldBucket = bucketOf[cell] - 1;
+
+        if(oldBucket >= 0){
+            if(bucketKeys[oldBucket] == key) return;
+            removeFromBucket(cell, oldBucket);
+            size--;
+            decreaseKeys++;
+        }
+        else{
+            pushes++;
+        }
+
+        if(size == 0){
+            lowest = key;
+            highest = key;
+        }
+        else{
+            long newLowest = Math.min(lowest, key);
+            long newHighest = Math.max(highest, key);
+            if(newHighest - newLowest > ringMask) grow(newHighest - newLowest + 1);
+
+            lowest = newLowest;
+            highest = newHighest;
+        }
+
+        addToBucket(cell, key);
+        size++;
+        if(size > peakSize) peakSize = size;
+    }
+
+    /**
+     * @exception NoSuchElementException if the queue is empty
+     */
+    @Override
+    public int poll() {
+        if(size == 0) throw new NoSuchElementException("The open list is empty");
+
+        int bucket = (int) lowest & ringMask;
+        if(bucketSizes[bucket] == 0){
+            //the ring only spans the keys in the queue, so the next non empty bucket after the lowest key is the lowest one
+            bucket = nextOccupied(bucket);
+            if(bucket < 0) bucket = nextOccupied(0);
+            lowest = bucketKeys[bucket];
+        }
+
+        int cell = buckets[bucket][--bucketSizes[bucket]];
+        if(bucketSizes[bucket] == 0) clearOccupied(bucket);
+        bucketOf[cell] = 0;
+        size--;
+        pops++;
+        return cell;
+    }
+
+    @Override
+    public boolean contains(int cell) {
+        return bucketOf[cell] != 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(int bucket = 0; bucket < buckets.length && size > 0; bucket++){
+            if(bucketSizes[bucket] == 0) continue;
+
+            for(int i = 0; i < bucketSizes[bucket]; i++){
+                bucketOf[buckets[bucket][i]] = 0;
+                size--;
+            }
+            bucketSizes[bucket] = 0;
+            clearOccupied(bucket);
+        }
+        size = 0;
+        pushes = 0;
+        pops = 0;
+        decreaseKeys = 0;
+        peakSize = 0;
+    }
+
+    @Override
+    public long getPushes() {
+        return pushes;
+    }
+
+    @Override
+    public long getPops() {
+        return pops;
+    }
+
+    @Override
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    @Override
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    /**
+     * enlarges the ring and moves every bucket to the position of its key in the new ring
+     * @param span number of keys the ring has to hold atleast
+     */
+    private void grow(long span){
+        if(span > 1 << 30) throw new IllegalStateException("The priorities in the bucket queue are too far apart");
+
+        int length = Integer.highestOneBit((int) span - 1) << 1;
+        int[][] newBuckets = new int[length][];
+        int[] newBucketSizes = new int[length];
+        long[] newBucketKeys = new long[length];
+        long[] newOccupied = new long[length >>> 6];
+        long[] newSummary = new long[(newOccupied.length + 63) >>> 6];
+
+        for(int bucket = 0; bucket < buckets.length; bucket++){
+            if(bucketSizes[bucket] == 0) continue;
+
+            int newBucket = (int) bucketKeys[bucket] & (length - 1);
+            newBuckets[newBucket] = buckets[bucket];
+            newBucketSizes[newBucket] = bucketSizes[bucket];
+            newBucketKeys[newBucket] = bucketKeys[bucket];
+            newOccupied[newBucket >>> 6] |= 1L << newBucket;
+            newSummary[newBucket >>> 12] |= 1L << (newBucket >>> 6);
+
+            for(int i = 0; i < bucketSizes[bucket]; i++){
+                bucketOf[buckets[bucket][i]] = newBucket + 1;
+            }
+        }
+
+        buckets = newBuckets;
+        bucketSizes = newBucketSizes;
+        bucketKeys = newBucketKeys;
+        occupied = newOccupied;
+        summary = newSummary;
+        ringMask = length - 1;
+    }
+
+    /**
+     * @return the first non empty bucket at or after the bucket in the ring without wrapping around, -1 if there is none
+     */
+    private int nextOccupied(int bucket){
+        int word = bucket >>> 6;
+        long bits = occupied[word] & -1L << bucket;
+        if(bits != 0) return word << 6 | Long.numberOfTrailingZeros(bits);
+
+        //the summary finds the next non empty word
+        word++;
+        for(int summaryWord = word >>> 6; summaryWord < summary.length; summaryWord++){
+            long words = summary[summaryWord];
+            if(summaryWord == word >>> 6) words &= -1L << word;
+            if(words == 0) continue;
+
+            int next = summaryWord << 6 | Long.numberOfTrailingZeros(words);
+            return next << 6 | Long.numberOfTrailingZeros(occupied[next]);
+        }
+        return -1;
+    }
+
+    private void clearOccupied(int bucket){
+        int word = bucket >>> 6;
+        occupied[word] &= ~(1L << bucket);
+        if(occupied[word] == 0) summary[word >>> 6] &= ~(1L << word);
+    }
+
+    private void addToBucket(int cell, long key){
+        int bucket = (int) key & ringMask;
+        int[] content = buckets[bucket];
+        int bucketSize = bucketSizes[bucket];
+
+        if(content == null){
+            content = new int[8];
+            buckets[bucket] = content;
+        }
+        else if(bucketSize == content.length){
+            content = Arrays.copyOf(content, bucketSize * 2);
+            buckets[bucket] = content;
+        }
+
+        if(bucketSize == 0){
+            occupied[bucket >>> 6] |= 1L << bucket;
+            summary[bucket >>> 12] |= 1L << (bucket >>> 6);
+        }
+
+        content[bucketSize] = cell;
+        bucketSizes[bucket] = bucketSize + 1;
+        bucketKeys[bucket] = key;
+        bucketOf[cell] = bucket + 1;
+        slot[cell] = bucketSize;
+    }
+
+    /**
+     * removes the cell by moving the last cell of the bucket into its slot
+     */
+    private void removeFromBucket(int cell, int bucket){
+        int[] content = buckets[bucket];
+        int last = content[--bucketSizes[bucket]];
+
+        content[slot[cell]] = last;
+        slot[last] = slot[cell];
+        bucketOf[cell] = 0;
+        if(bucketSizes[bucket] == 0) clearOccupied(bucket);
+    }
+}
@@ -0,0 +1,185 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * connected components of the traversable cells of a grid, stored as a union find forest over the cell indices
+ * two cells are connected if they have the same root, a path between them exists exactly then.
+ * the forest is built in parallel on the common fork join pool and flattened afterwards, so most lookups need a single step.
+ * opened cells are merged into the forest, a blocked cell that can split its component makes the index outdated.
+ * the index is not changed by lookups, so it can be read by many threads at the same time, but not while it is changed
+ */
+class ComponentIndex {
+
+    // number of rows that one task of the parallel build labels
+    private static final int ROWS_PER_STRIP = 64;
+
+    // directions that point to cells that come before the cell in row major order
+    private static final int PREVIOUS_DIRECTIONS = 0b00001111;
+
+    // the 8 neighbours of a cell in the order of a walk around it, every two successive ones are neighbours of each other
+    private static final int[] RING = {0, 1, 2, 4, 7, 6, 5, 3};
+
+    private final NodeGrid grid;
+
+    // parent of every node, roots are their own parent. the node of a cell is the cell index, except for cells opened after the build
+    private int[] parents;
+
+    private int nodes;
+
+    // node of every cell opened after the build. the old node of the cell can still be the parent of other nodes, so it is kept
+    private final Map<Integer, Integer> openedNodes = new HashMap<>();
+
+    /**
+     * builds the index, the strips of rows are labeled in parallel and joined afterwards
+     */
+    ComponentIndex(NodeGrid grid){
+        this.grid = grid;
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        parents = new int[width * height];
+        nodes = parents.length;
+
+        int strips = (height + ROWS_PER_STRIP - 1) / ROWS_PER_STRIP;
+        IntStream.range(0, strips).parallel().forEach(strip -> {
+            int firstRow = strip * ROWS_PER_STRIP;
+            int lastRow = Math.min(height, firstRow + ROWS_PER_STRIP) - 1;
+
+            for(int index = firstRow * width; index < (lastRow + 1) * width; index++){
+                parents[index] = index;
+                if(!grid.isTraversable(index)) continue;
+
+                //the first row of a strip is joined with the strip above afterwards
+                int mask = grid.getNeighbourMask(index) & PREVIOUS_DIRECTIONS;
+                if(index < (firstRow + 1) * width) mask &= 0b00001000;
+
+                while(mask != 0){
+                    int direction = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+
+                    union(index, index + grid.getDirectionOffset(direction));
+                }
+            }
+        });
+
+        //the first row of every strip with the last row of the strip above
+        for(int strip = 1; strip < strips; strip++){
+            int row = strip * ROWS_PER_STRIP;
+            for(int index = row * width; index < (row + 1) * width; index++){
+                if(!grid.isTraversable(index)) continue;
+                int mask = grid.getNeighbourMask(index) & 0b00000111;
+
+                while(mask != 0){
+                    int direction = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+
+                    union(index, index + grid.getDirectionOffset(direction));
+                }
+            }
+        }
+
+        //every cell points to its root afterwards. a cell that is read while another one is written still only sees one of its ancestors
+        IntStream.range(0, parents.length).parallel().forEach(index -> parents[index] = find(index));
+    }
+
+    /**
+     * @return true if both cells are in the same component, only valid for traversable cells
+     */
+    boolean isConnected(int first, int second){
+        return find(getNode(first)) == find(getNode(second));
+    }
+
+    /**
+     * gives the opened cell a new node and merges it with the components of all of its traversable neighbours
+     * @return true if the index is still valid, false if so many cells were opened that it should be built again
+     */
+    boolean cellOpened(int index){
+        if(openedNodes.size() >= grid.getWidth() * grid.getHeight() / 8) return false;
+
+        if(nodes == parents.length) parents = Arrays.copyOf(parents, nodes + nodes / 8 + 1);
+        int node = nodes++;
+        parents[node] = node;
+        openedNodes.put(index, node);
+
+        int mask = grid.getNeighbourMask(index);
+        while(mask != 0){
+            int direction = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+
+            union(node, getNode(index + grid.getDirectionOffset(direction)));
+        }
+        return true;
+    }
+
+    /**
+     * a blocked cell only splits its component if its traversable neighbours are not connected around it
+     * @return true if the index is still valid, false if it has to be built again
+     */
+    boolean cellBlocked(int index){
+        int mask = grid.getNeighbourMask(index);
+
+        //count the runs of traversable neighbours on the walk around the cell
+        int runs = 0;
+        for(int i = 0; i < RING.length; i++){
+            boolean current = (mask >>> RING[i] & 1) != 0;
+            boolean previous = (mask >>> RING[(i + RING.length - 1) % RING.length] & 1) != 0;
+            if(current && !previous) runs++;
+        }
+        if(runs <= 1) return true;
+
+        //two runs are still connected if they are separated by a single blocked corner, the straight neighbours around it touch diagonally
+        for(int i = 0; i < RING.length; i += 2){
+            boolean corner = (mask >>> RING[i] & 1) != 0;
+            boolean before = (mask >>> RING[(i + RING.length - 1) % RING.length] & 1) != 0;
+            boolean after = (mask >>> RING[i + 1] & 1) != 0;
+            if(!corner && before && after) runs--;
+        }
+        return runs <= 1;
+    }
+
+    private int getNode(int index){
+        if(openedNodes.isEmpty()) return index;
+
+        Integer node = openedNodes.get(index);
+        return node == null ? index : node;
+    }
+
+    /**
+     * only reads the forest, so it can run on many threads at the same time
+     */
+    private int find(int index){
+        int parent = parents[index];
+        while(parent != index){
+            index = parent;
+            parent = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * find with path halving, every node on the way is linked to its grandparent
+     */
+    private int findAndCompress(int index){
+        while(parents[index] != index){
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * links the root with the higher index to the other root. only called by one thread per part of the forest
+     */
+    private void union(int first, int second){
+        int firstRoot = findAndCompress(first);
+        int secondRoot = findAndCompress(second);
+        if(firstRoot == secondRoot) return;
+
+        if(firstRoot < secondRoot) parents[secondRoot] = firstRoot;
+        else parents[firstRoot] = secondRoot;
+    }
+}
@@ -0,0 +1,284 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * incremental planner for one agent that moves to a fixed goal while cells are opened and blocked (D* Lite, Koenig and Likhachev 2002)
+ * http://idm-lab.org/bib/abstracts/papers/aaai02b.pdf
+ * the planner searches from the goal to the agent and keeps the costs of its search between the calls of findPath.
+ * after a cell changed only the cells whose cost to the goal changed are searched again, which is usually a small part of a fresh search.
+ * cells have to be changed with setTraversable of the planner, a change of the grid by anything else is noticed and answered with a fresh search.
+ * the planner keeps two costs per cell of the grid and is not thread safe, every agent needs its own planner
+ */
+public class DStarLite {
+
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final NodeGrid grid;
+
+    private final int goal;
+
+    private int start;
+
+    // start of the agent when the keys in the open list were computed, see keyModifier
+    private int lastStart;
+
+    // sum of the heuristics between all starts of the agent, added to the keys instead of recomputing them when the agent moves
+    private long keyModifier;
+
+    // cost of the cheapest path to the goal found so far
+    private final long[] costs;
+
+    // one step lookahead: cost of the best neighbour plus the step to it. the cell is consistent if both are equal
+    private final long[] lookahead;
+
+    // inconsistent cells, the priority is the first and the heuristic the second part of the key
+    private final IndexedDaryHeap openList;
+
+    // version of the grid the costs were computed on
+    private int gridVersion;
+
+    private int expansions;
+
+    private final int[] neighbours = new int[8];
+
+    /**
+     * Constructor
+     * @param grid the grid to plan on, not null
+     * @param startX x coordinate of the agent
+     * @param startY y coordinate of the agent
+     * @param goalX x coordinate of the goal
+     * @param goalY y coordinate of the goal
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public DStarLite(NodeGrid grid, int startX, int startY, int goalX, int goalY){
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(!grid.contains(startX, startY) || !grid.contains(goalX, goalY)) throw new IllegalArgumentException("The start or goal coordinates are outside of the grid");
+
+        int cells = grid.getWidth() * grid.getHeight();
+        this.grid = grid;
+        this.goal = grid.index(goalX, goalY);
+        this.start = grid.index(startX, startY);
+        this.costs = new long[cells];
+        this.lookahead = new long[cells];
+        this.openList = new IndexedDaryHeap(cells, 4);
+
+        initialize();
+    }
+
+    /**
+     * moves the agent, the next findPath starts there. the costs of the previous search stay valid since they are costs to the goal
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public void moveStart(int x, int y){
+        if(!grid.contains(x, y)) throw new IllegalArgumentException("The coordinates are outside of the grid");
+
+        start = grid.index(x, y);
+    }
+
+    /**
+     * opens or blocks the cell of the grid and marks the cell and its neighbours for the next findPath
+     * @exception IllegalArgumentException see NodeGrid.setTraversable
+     * @exception UnsupportedOperationException see NodeGrid.setTraversable
+     */
+    public void setTraversable(int x, int y, boolean traversable){
+        if(!grid.contains(x, y)) throw new IllegalArgumentException("The coordinates are outside of the grid");
+
+        int cell = grid.index(x, y);
+        if(grid.isTraversable(cell) == traversable) return;
+
+        //a change by someone else since the last search cant be repaired, the next findPath starts from scratch anyway
+        boolean upToDate = grid.getVersion() == gridVersion;
+        grid.setTraversable(x, y, traversable);
+        if(!upToDate) return;
+        gridVersion = grid.getVersion();
+
+        //the steps into and out of the cell changed, which changes the lookahead of the cell and all of its neighbours
+        updateLookahead(cell);
+        for(int d = 0; d < 8; d++){
+            if(grid.contains(x + NodeGrid.DIRECTION_X[d], y + NodeGrid.DIRECTION_Y[d])){
+                updateLookahead(cell + grid.getDirectionOffset(d));
+            }
+        }
+    }
+
+    /**
+     * repairs the costs of the cells that changed since the last call and follows the cheapest steps from the agent to the goal
+     * @return the nodes from the agent to the goal, null if the goal cant be reached
+     */
+    public List<Node> findPath(){
+        if(grid.getVersion() != gridVersion) initialize();
+
+        if(start != lastStart){
+            keyModifier += heuristic(lastStart);
+            lastStart = start;
+        }
+
+        expansions = 0;
+        computeShortestPath();
+
+        //the start itself is not always expanded, but its lookahead is exact
+        if(!grid.isTraversable(start) || lookahead[start] == UNREACHED) return null;
+
+        List<Node> path = new ArrayList<>();
+        int current = start;
+        path.add(grid.getNode(current));
+        while(current != goal){
+            int count = grid.getNeighbours(current, neighbours);
+
+            int next = -1;
+            long best = UNREACHED;
+            for(int i = 0; i < count; i++){
+                long cost = costs[neighbours[i]];
+                if(cost == UNREACHED) continue;
+
+                cost += grid.getMoveCost(current, neighbours[i]);
+                if(cost < best){
+                    best = cost;
+                    next = neighbours[i];
+                }
+            }
+
+            //the costs are consistent along the path, so every step gets cheaper and this can only happen if the grid was changed meanwhile
+            if(next < 0 || path.size() > costs.length) return null;
+
+            current = next;
+            path.add(grid.getNode(current));
+        }
+        return path;
+    }
+
+    /**
+     * @return the number of cells expanded by the last findPath
+     */
+    public int getExpansions(){
+        return expansions;
+    }
+
+    /**
+     * forgets all costs and starts a fresh search from the goal
+     */
+    private void initialize(){
+        Arrays.fill(costs, UNREACHED);
+        Arrays.fill(lookahead, UNREACHED);
+        openList.clear();
+        keyModifier = 0;
+        lastStart = start;
+        gridVersion = grid.getVersion();
+
+        if(grid.isTraversable(goal)){
+            lookahead[goal] = 0;
+            insertOrUpdate(goal);
+        }
+    }
+
+    /**
+     * expands the inconsistent cells in the order of their keys until the cost of the start cant get lower anymore
+     */
+    private void computeShortestPath(){
+        while(!openList.isEmpty()){
+            long startCost = Math.min(costs[start], lookahead[start]);
+            long startPriority = add(startCost, heuristic(start) + keyModifier);
+            if(!isLower(openList.peekPriority(), openList.peekHeuristic(), startPriority, startCost) && lookahead[start] <= costs[start]) break;
+
+            int cell = openList.peek();
+            long cost = Math.min(costs[cell], lookahead[cell]);
+            long priority = cost + heuristic(cell) + keyModifier;
+
+            //the key was computed for an earlier start of the agent
+            if(isLower(openList.peekPriority(), openList.peekHeuristic(), priority, cost)){
+                openList.insertOrUpdate(cell, priority, cost);
+                continue;
+            }
+
+            expansions++;
+            openList.poll();
+
+            int count = grid.getNeighbours(cell, neighbours);
+            if(costs[cell] > lookahead[cell]){
+                //overconsistent: the cell got cheaper, which can make its neighbours cheaper
+                costs[cell] = lookahead[cell];
+                for(int i = 0; i < count; i++){
+                    int neighbour = neighbours[i];
+                    if(neighbour == goal) continue;
+
+                    long viaCell = costs[cell] + grid.getMoveCost(neighbour, cell);
+                    if(viaCell < lookahead[neighbour]){
+                        lookahead[neighbour] = viaCell;
+                        insertOrUpdate(neighbour);
+                    }
+                }
+            }
+            else{
+                //underconsistent: the cell got more expensive, all neighbours that used it have to look for another way
+                long oldCost = costs[cell];
+                costs[cell] = UNREACHED;
+                updateLookahead(cell);
+                for(int i = 0; i < count; i++){
+                    int neighbour = neighbours[i];
+                    if(lookahead[neighbour] == add(oldCost, grid.getMoveCost(neighbour, cell))) updateLookahead(neighbour);
+                }
+            }
+        }
+    }
+
+    /**
+     * recomputes the lookahead of the cell from all of its neighbours and queues the cell if it is inconsistent afterwards
+     */
+    private void updateLookahead(int cell){
+        if(cell != goal){
+            long best = UNREACHED;
+            if(grid.isTraversable(cell)){
+                int mask = grid.getNeighbourMask(cell);
+                while(mask != 0){
+                    int direction = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+
+                    int neighbour = cell + grid.getDirectionOffset(direction);
+                    best = Math.min(best, add(costs[neighbour], grid.getStepCost(cell, direction)));
+                }
+            }
+            lookahead[cell] = best;
+        }
+        else if(!grid.isTraversable(goal)){
+            lookahead[goal] = UNREACHED;
+        }
+        else{
+            lookahead[goal] = 0;
+        }
+        insertOrUpdate(cell);
+    }
+
+    /**
+     * queues the cell with its current key if it is inconsistent, removes it otherwise
+     */
+    private void insertOrUpdate(int cell){
+        if(costs[cell] == lookahead[cell]){
+            openList.remove(cell);
+            return;
+        }
+
+        long cost = Math.min(costs[cell], lookahead[cell]);
+        openList.insertOrUpdate(cell, cost + heuristic(cell) + keyModifier, cost);
+    }
+
+    /**
+     * admissible and consistent estimate of the cost from the agent to the cell
+     */
+    private long heuristic(int cell){
+        return grid.estimateCost(cell, grid.getX(start), grid.getY(start));
+    }
+
+    private static boolean isLower(long priority, long cost, long otherPriority, long otherCost){
+        return priority < otherPriority || (priority == otherPriority && cost < otherCost);
+    }
+
+    /**
+     * @return the sum, UNREACHED if one of them is UNREACHED
+     */
+    private static long add(long cost, long step){
+        return cost == UNREACHED ? UNREACHED : cost + step;
+    }
+}
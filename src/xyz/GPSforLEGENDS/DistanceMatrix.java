@@ -0,0 +1,178 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * shortest distances between all pairs of a list of points on one grid
+ * the distances are stored in a dense row major table, paths are only searched on demand
+ * the distances are measured in straight steps over cells of cost 1, so a diagonal step costs about 1.414
+ * @see AStar#findDistances(List)
+ */
+public class DistanceMatrix {
+
+    private final NodeGrid grid;
+
+    private final List<Node> points;
+
+    // fixed point cost from point i to point j at i * size + j, Long.MAX_VALUE if unreachable
+    private final long[] costs;
+
+    private DistanceMatrix(NodeGrid grid, List<Node> points, long[] costs){
+        this.grid = grid;
+        this.points = points;
+        this.costs = costs;
+    }
+
+    /**
+     * runs one multi target Dijkstra search per point on the pool. every search stops as soon as all of its targets are settled.
+     * the costs are symmetric, so the search of point i only needs the points from i on as targets
+     */
+    static DistanceMatrix compute(NodeGrid grid, List<Node> points, ForkJoinPool pool){
+        int size = points.size();
+        List<Node> copy = Collections.unmodifiableList(new ArrayList<>(points));
+        long[] costs = new long[size * size];
+
+        //all points on the same cell are settled together, the bitset avoids a map lookup for every other cell
+        Map<Integer, List<Integer>> pointsOfCell = new HashMap<>();
+        BitSet targetCells = new BitSet();
+        for(int i = 0; i < size; i++){
+            int cell = copy.get(i).getIndex();
+            pointsOfCell.computeIfAbsent(cell, key -> new ArrayList<>()).add(i);
+            targetCells.set(cell);
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            int source = i;
+            tasks.add(ForkJoinTask.adapt(() -> searchRow(grid, copy, pointsOfCell, targetCells, source, costs)));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        return new DistanceMatrix(grid, copy, costs);
+    }
+
+    /**
+     * fills row and column of the source from the source on, with a search context borrowed from the grid
+     */
+    private static void searchRow(NodeGrid grid, List<Node> points, Map<Integer, List<Integer>> pointsOfCell, BitSet targetCells,
+                                  int source, long[] costs){
+        int size = points.size();
+        for(int target = source; target < size; target++){
+            costs[source * size + target] = Long.MAX_VALUE;
+            costs[target * size + source] = Long.MAX_VALUE;
+        }
+
+        //number of different target cells that are not settled yet
+        int remaining = 0;
+        for(int target = source; target < size; target++){
+            int cell = points.get(target).getIndex();
+            if(pointsOfCell.get(cell).get(pointsOfCell.get(cell).size() - 1) == target) remaining++;
+        }
+
+        SearchContext context = grid.acquireSearchContext();
+        try {
+            context.reset();
+            OpenList openList = context.getOpenList(true, OpenListType.DARY_HEAP);
+
+            int start = points.get(source).getIndex();
+            context.setCostToReach(start, 0, true);
+            openList.insertOrUpdate(start, 0, 0);
+
+            while(!openList.isEmpty() && remaining > 0){
+                int current = openList.poll();
+                long cost = context.getCostToReach(current, true);
+                context.setStatus(current, 1);
+
+                List<Integer> settled = targetCells.get(current) ? pointsOfCell.get(current) : null;
+                if(settled != null && settled.get(settled.size() - 1) >= source){
+                    for(int target : settled){
+                        if(target < source) continue;
+                        costs[source * size + target] = cost;
+                        costs[target * size + source] = cost;
+                    }
+                    remaining--;
+                }
+
+                int mask = grid.getNeighbourMask(current);
+                while(mask != 0){
+                    int direction = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+
+                    int neighbour = current + grid.getDirectionOffset(direction);
+                    long costToReach = cost + grid.getStepCost(current, direction);
+                    if(costToReach >= context.getCostToReach(neighbour, true)) continue;
+
+                    context.setCostToReach(neighbour, costToReach, true);
+                    context.setPredecessor(neighbour, current, true);
+                    openList.insertOrUpdate(neighbour, costToReach, 0);
+                }
+            }
+        } finally {
+            grid.releaseSearchContext(context);
+        }
+    }
+
+    /**
+     * @return the number of points
+     */
+    public int size(){
+        return points.size();
+    }
+
+    /**
+     * @return the point with the index in the list the matrix was computed for
+     */
+    public Node getPoint(int index){
+        return points.get(index);
+    }
+
+    /**
+     * @param from index of the first point
+     * @param to index of the second point
+     * @return the length of the shortest path, Double.POSITIVE_INFINITY if there is none
+     */
+    public double getDistance(int from, int to){
+        long cost = costs[from * points.size() + to];
+        return cost == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : (double) cost / NodeGrid.STRAIGHT_COST;
+    }
+
+    /**
+     * @return true if there is a path between both points
+     */
+    public boolean isReachable(int from, int to){
+        return costs[from * points.size() + to] != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return a copy of the dense table, the distance from point i to point j is at i * size() + j
+     */
+    public double[] toArray(){
+        double[] distances = new double[costs.length];
+        int size = points.size();
+        for(int i = 0; i < distances.length; i++){
+            distances[i] = getDistance(i / size, i % size);
+        }
+        return distances;
+    }
+
+    /**
+     * searches the path between both points, the matrix does not store any paths
+     * @param from index of the first point
+     * @param to index of the second point
+     * @return the nodes of a shortest path from the first to the second point, null if there is none
+     */
+    public List<Node> getPath(int from, int to){
+        if(!isReachable(from, to)) return null;
+
+        Node start = points.get(from);
+        Node end = points.get(to);
+        return new AStar(grid).findPath(start.getX(), start.getY(), end.getX(), end.getY());
+    }
+}
@@ -0,0 +1,196 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+/**
+ * shortest paths from every cell of a grid to one goal, for many agents that share the goal
+ * a single Dijkstra search runs from the goal over the whole component of the goal, the costs are symmetric
+ * so its predecessors are the first steps of the shortest paths to the goal.
+ * every cell stores the direction of its first step in 3 bits and its distance to the goal, so any start reads its path
+ * in the time of the path length without a search
+ * @see AStar#getFlowField(int, int)
+ */
+public class FlowField {
+
+    // 3 bit directions per long, 63 bits are used
+    private static final int DIRECTIONS_PER_WORD = 21;
+
+    // cells per task of the parallel packing, a multiple of DIRECTIONS_PER_WORD so no two tasks write the same word
+    private static final int CELLS_PER_TASK = DIRECTIONS_PER_WORD * 4096;
+
+    private final NodeGrid grid;
+
+    private final int goal;
+
+    // direction of the first step of every cell, see NodeGrid.DIRECTION_X. only valid for reachable cells other than the goal
+    private final long[] directions;
+
+    // distance of every cell to the goal in straight steps over cells of cost 1, Float.POSITIVE_INFINITY if unreachable
+    private final float[] distances;
+
+    // version of the grid the field was computed for
+    private final int gridVersion;
+
+    private FlowField(NodeGrid grid, int goal, long[] directions, float[] distances, int gridVersion){
+        this.grid = grid;
+        this.goal = goal;
+        this.directions = directions;
+        this.distances = distances;
+        this.gridVersion = gridVersion;
+    }
+
+    /**
+     * runs the Dijkstra search from the goal, with more than one thread as a HashDistributedSearch without an end,
+     * and packs the predecessors into directions in parallel on the common fork join pool
+     * @param goal index of a traversable cell
+     * @param threads number of threads of the search, atleast 1. one of them is the calling thread
+     * @param executor runs the other threads of the search
+     */
+    static FlowField compute(NodeGrid grid, int goal, int threads, Executor executor){
+        int gridVersion = grid.getVersion();
+        int cells = grid.getWidth() * grid.getHeight();
+
+        long[] directions = new long[(cells + DIRECTIONS_PER_WORD - 1) / DIRECTIONS_PER_WORD];
+        float[] distances = new float[cells];
+
+        SearchContext context = grid.acquireSearchContext();
+        try {
+            context.reset();
+            if(threads > 1) new HashDistributedSearch(grid, context, goal, -1, threads).search(executor);
+            else search(grid, context, goal);
+
+            //the context is only read by the tasks, the pool finishes them before it is released
+            int tasks = (cells + CELLS_PER_TASK - 1) / CELLS_PER_TASK;
+            IntStream.range(0, tasks).parallel().forEach(task -> {
+                int first = task * CELLS_PER_TASK;
+                int last = Math.min(cells, first + CELLS_PER_TASK);
+
+                for(int cell = first; cell < last; cell++){
+                    long cost = context.getCostToReach(cell, true);
+                    distances[cell] = cost == Long.MAX_VALUE ? Float.POSITIVE_INFINITY : (float) cost / NodeGrid.STRAIGHT_COST;
+
+                    int predecessor = cost == Long.MAX_VALUE ? -1 : context.getPredecessor(cell, true);
+                    if(predecessor < 0) continue;
+
+                    int direction = toDirection(grid.getX(predecessor) - grid.getX(cell), grid.getY(predecessor) - grid.getY(cell));
+                    directions[cell / DIRECTIONS_PER_WORD] |= (long) direction << (cell % DIRECTIONS_PER_WORD * 3);
+                }
+            });
+        } finally {
+            grid.releaseSearchContext(context);
+        }
+
+        return new FlowField(grid, goal, directions, distances, gridVersion);
+    }
+
+    /**
+     * Dijkstra search from the goal over its whole component on the calling thread
+     */
+    private static void search(NodeGrid grid, SearchContext context, int goal){
+        OpenList openList = context.getOpenList(true, OpenListType.DARY_HEAP);
+
+        context.setCostToReach(goal, 0, true);
+        openList.insertOrUpdate(goal, 0, 0);
+
+        while(!openList.isEmpty()){
+            int current = openList.poll();
+            long cost = context.getCostToReach(current, true);
+
+            int mask = grid.getNeighbourMask(current);
+            while(mask != 0){
+                int direction = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+
+                int neighbour = current + grid.getDirectionOffset(direction);
+                long costToReach = cost + grid.getStepCost(current, direction);
+                if(costToReach >= context.getCostToReach(neighbour, true)) continue;
+
+                context.setCostToReach(neighbour, costToReach, true);
+                context.setPredecessor(neighbour, current, true);
+                openList.insertOrUpdate(neighbour, costToReach, 0);
+            }
+        }
+    }
+
+    public Node getGoal(){
+        return grid.getNode(goal);
+    }
+
+    /**
+     * @return true if a path from the cell to the goal exists
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public boolean isReachable(int x, int y){
+        return distances[toIndex(x, y)] != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the length of the shortest path from the cell to the goal in straight steps over cells of cost 1,
+     * Float.POSITIVE_INFINITY if there is none
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public float getDistance(int x, int y){
+        return distances[toIndex(x, y)];
+    }
+
+    /**
+     * @return the next node on the shortest path from the cell to the goal, null if the cell is the goal or cant reach it
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public Node getNext(int x, int y){
+        int cell = toIndex(x, y);
+        if(cell == goal || distances[cell] == Float.POSITIVE_INFINITY) return null;
+
+        int direction = getDirection(cell);
+        return grid.getNode(x + NodeGrid.DIRECTION_X[direction], y + NodeGrid.DIRECTION_Y[direction]);
+    }
+
+    /**
+     * follows the directions from the cell to the goal
+     * @return the nodes from the cell to the goal, null if the cell cant reach the goal
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public List<Node> getPath(int x, int y){
+        int cell = toIndex(x, y);
+        if(distances[cell] == Float.POSITIVE_INFINITY) return null;
+
+        List<Node> path = new ArrayList<>();
+        path.add(grid.getNode(cell));
+        while(cell != goal){
+            cell += grid.getDirectionOffset(getDirection(cell));
+            path.add(grid.getNode(cell));
+        }
+        return path;
+    }
+
+    /**
+     * the field is not updated when the grid changes, AStar computes outdated fields again
+     * @return true if a cell of the grid changed after the field was computed
+     */
+    public boolean isOutdated(){
+        return grid.getVersion() != gridVersion;
+    }
+
+    private int getDirection(int cell){
+        return (int) (directions[cell / DIRECTIONS_PER_WORD] >>> (cell % DIRECTIONS_PER_WORD * 3)) & 7;
+    }
+
+    private int toIndex(int x, int y){
+        if(!grid.contains(x, y)) throw new IllegalArgumentException("The coordinates are outside of the grid");
+
+        return grid.index(x, y);
+    }
+
+    /**
+     * @return the direction d with NodeGrid.DIRECTION_X[d] == dx and NodeGrid.DIRECTION_Y[d] == dy
+     */
+    private static int toDirection(int dx, int dy){
+        for(int d = 0; d < 8; d++){
+            if(NodeGrid.DIRECTION_X[d] == dx && NodeGrid.DIRECTION_Y[d] == dy) return d;
+        }
+        throw new IllegalStateException("The predecessor is not a neighbour");
+    }
+}
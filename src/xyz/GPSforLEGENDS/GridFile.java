@@ -0,0 +1,175 @@
+package xyz.GPSforLEGENDS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * binary file format of a NodeGrid, also used for the Landmarks of a grid
+ * the sections of the file are opened with FileChannel.map, so opening a file takes the same time for every grid size,
+ * the pages are shared between all processes that open the same file and the grid does not have to fit into the heap
+ *
+ * layout, little endian:
+ * header: int magic, int version, int width, int height, int section count, int reserved
+ * section table: per section int type, int reserved, long offset, long length
+ * the sections follow the table, every section starts at a multiple of 8 bytes
+ */
+final class GridFile {
+
+    static final int MAGIC = 0x44524741;
+    static final int VERSION = 1;
+
+    // traversability bitset, one little endian long per 64 cells
+    static final int SECTION_TRAVERSABLE = 1;
+
+    // one neighbour mask byte per cell
+    static final int SECTION_NEIGHBOUR_MASKS = 2;
+
+    // one unsigned terrain cost byte per cell, only in files of weighted grids
+    static final int SECTION_COSTS = 3;
+
+    // the lowest cost of a traversable cell as one int, only in files of weighted grids
+    static final int SECTION_MINIMUM_COST = 4;
+
+    // the cell index of every landmark as one int, only in landmark files
+    static final int SECTION_LANDMARK_CELLS = 5;
+
+    // the fixed point cost of one distance unit of every landmark as one long, only in landmark files
+    static final int SECTION_LANDMARK_SCALES = 6;
+
+    // the distance of every cell to every landmark as unsigned short, cell major. only in landmark files
+    static final int SECTION_LANDMARK_DISTANCES = 7;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int SECTION_ENTRY_SIZE = 24;
+
+    // largest part of a heap buffer that is written at once, FileChannel copies heap buffers into a temporary direct buffer
+    private static final int WRITE_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final int width;
+    private final int height;
+
+    private final Map<Integer, ByteBuffer> sections;
+
+    private GridFile(int width, int height, Map<Integer, ByteBuffer> sections){
+        this.width = width;
+        this.height = height;
+        this.sections = sections;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the read only, little endian content of the section, null if the file has no such section
+     */
+    ByteBuffer getSection(int type){
+        ByteBuffer section = sections.get(type);
+        return section == null ? null : section.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * maps all sections of the file into memory
+     * @param file not null
+     * @return the opened file
+     * @exception IOException if the file cant be read or is not a grid file
+     */
+    static GridFile open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            ByteBuffer header = read(channel, 0, HEADER_SIZE);
+
+            if(header.getInt() != MAGIC) throw new IOException("The file is not a grid file: " + file);
+
+            int version = header.getInt();
+            if(version != VERSION) throw new IOException("Unsupported grid file version " + version + ": " + file);
+
+            int width = header.getInt();
+            int height = header.getInt();
+            int sectionCount = header.getInt();
+
+            //a corrupt count would allocate a huge or negative table
+            if(sectionCount < 0 || (long) sectionCount * SECTION_ENTRY_SIZE > channel.size() - HEADER_SIZE){
+                throw new IOException("The grid file has an invalid section count " + sectionCount + ": " + file);
+            }
+
+            ByteBuffer table = read(channel, HEADER_SIZE, sectionCount * SECTION_ENTRY_SIZE);
+            Map<Integer, ByteBuffer> sections = new LinkedHashMap<>();
+            for(int i = 0; i < sectionCount; i++){
+                int type = table.getInt();
+                table.getInt();
+                long offset = table.getLong();
+                long length = table.getLong();
+
+                if(offset < 0 || length < 0 || offset + length > channel.size()) throw new IOException("The grid file is truncated: " + file);
+
+                MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                sections.put(type, section);
+            }
+            //the mappings stay valid after the channel is closed
+            return new GridFile(width, height, sections);
+        }
+    }
+
+    /**
+     * writes the sections into the file, an existing file is replaced
+     * @param file not null
+     * @param sections type and content of every section, the content from position to limit is written
+     */
+    static void save(Path file, int width, int height, Map<Integer, ByteBuffer> sections) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + sections.size() * SECTION_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(sections.size()).putInt(0);
+
+        long offset = align(header.capacity());
+        for(Map.Entry<Integer, ByteBuffer> section : sections.entrySet()){
+            long length = section.getValue().remaining();
+            header.putInt(section.getKey()).putInt(0).putLong(offset).putLong(length);
+            offset = align(offset + length);
+        }
+        header.flip();
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            write(channel, header, 0);
+
+            offset = align(header.capacity());
+            for(ByteBuffer section : sections.values()){
+                ByteBuffer content = section.duplicate();
+                long length = content.remaining();
+                write(channel, content, offset);
+                offset = align(offset + length);
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of the grid file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer content, long position) throws IOException {
+        int limit = content.limit();
+        while(content.hasRemaining()){
+            content.limit(Math.min(limit, content.position() + WRITE_CHUNK_SIZE));
+            position += channel.write(content, position);
+            content.limit(limit);
+        }
+    }
+
+    private static long align(long offset){
+        return (offset + 7) & ~7L;
+    }
+}
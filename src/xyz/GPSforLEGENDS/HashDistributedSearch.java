@@ -0,0 +1,542 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash Distributed A* (Kishimoto, Fukunaga and Botea 2009) for a single query on N threads
+ * every cell is owned by one worker, the owner is the hash of the 8x8 block that contains the cell, so neighbours mostly have the same owner.
+ * only the owner writes the cost and the predecessor of a cell into the search context, so the context needs no locks.
+ * a worker expands the cells of its own open list and sends every relaxation of a cell it does not own in batches
+ * to the lock free mailbox of the owner.
+ * the cost of the best path found so far is shared, cells that cant lead to a cheaper path are pruned.
+ * the search is finished when no worker is active and no message is unprocessed, the best path is then the shortest one.
+ * a worker only counts as active while it has work, so workers that the executor has not started yet dont keep the search alive,
+ * and the calling thread runs them itself if their mailbox fills up while it has nothing to do
+ */
+class HashDistributedSearch {
+
+    // side length of the blocks of cells with the same owner
+    private static final int BLOCK_SHIFT = 3;
+
+    // number of relaxations in one message
+    private static final int BATCH_SIZE = 64;
+
+    // number of cells a worker expands before it reads its mailbox
+    private static final int EXPANSIONS_PER_ROUND = 64;
+
+    // rounds without work a worker yields before it parks, and the longest park in nanoseconds
+    private static final int YIELD_ROUNDS = 16;
+    private static final long MAX_PARK_NANOS = 100_000;
+
+    private final NodeGrid grid;
+
+    private final SearchContext context;
+
+    private final int start, end;
+
+    private final int endX, endY;
+
+    private final Worker[] workers;
+
+    // number of active workers plus number of sent and not yet processed relaxations. the search is finished when it reaches 0,
+    // since only active workers send relaxations it can never rise again
+    private final AtomicLong activity;
+
+    // counted down for every worker except worker 0 when it is finished or was never started
+    private final CountDownLatch finished;
+
+    // the first exception thrown by a worker, stops all workers
+    private volatile RuntimeException failure;
+
+    private final int blocksX;
+
+    /**
+     * Constructor
+     * @param grid
+     * @param context the state of the search, has to be reset before the search
+     * @param start index of the start cell
+     * @param end index of the end cell, -1 to find the shortest paths from the start to every cell of its component (parallel Dijkstra)
+     * @param threads number of workers, atleast 1
+     */
+    HashDistributedSearch(NodeGrid grid, SearchContext context, int start, int end, int threads){
+        this.grid = grid;
+        this.context = context;
+        this.start = start;
+        this.end = end;
+        this.endX = end < 0 ? 0 : grid.getX(end);
+        this.endY = end < 0 ? 0 : grid.getY(end);
+        this.blocksX = (grid.getWidth() >>> BLOCK_SHIFT) + 1;
+
+        workers = new Worker[threads];
+        for(int i = 0; i < threads; i++){
+            workers[i] = new Worker(i);
+        }
+        //worker 0 is active from the start, the others become active when their mailbox receives the first relaxations
+        workers[0].active = true;
+        activity = new AtomicLong(1);
+        finished = new CountDownLatch(threads - 1);
+    }
+
+    /**
+     * runs the search, worker 0 runs on the calling thread and all other workers on the executor.
+     * a worker that the executor does not start while the calling thread has nothing to do is run by the calling thread,
+     * so the search also finishes on an executor with fewer threads than workers, only slower.
+     * returns after all workers are finished, the predecessors from start describe the path afterwards
+     * @param executor not null
+     */
+    void search(Executor executor){
+        Worker first = workers[0];
+        first.claimed.set(true);
+
+        //the start is sent to its owner like every other relaxation
+        int owner = getOwner(start);
+        if(owner == 0) first.relax(start, 0, -1);
+        else first.post(owner, Batch.of(start, 0, -1));
+
+        for(int i = 1; i < workers.length; i++){
+            Worker worker = workers[i];
+            executor.execute(() -> {
+                //already run by the calling thread
+                if(!worker.claimed.compareAndSet(false, true)) return;
+
+                try {
+                    worker.runSafely();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+
+        runOnCallingThread();
+
+        //the workers that were never started have nothing to do anymore
+        for(int i = 1; i < workers.length; i++){
+            if(workers[i].claimed.compareAndSet(false, true)) finished.countDown();
+        }
+
+        //the workers share the search context, it can only be used again when all of them are finished
+        boolean interrupted = false;
+        while(true){
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+
+        if(failure != null) throw failure;
+        context.getAndSetSolved(true);
+    }
+
+    /**
+     * runs worker 0 and every worker that the executor did not start in time, round by round on the calling thread
+     */
+    private void runOnCallingThread(){
+        List<Worker> running = new ArrayList<>();
+        running.add(workers[0]);
+        int idleRounds = 0;
+
+        try {
+            while(!running.isEmpty()){
+                boolean working = false;
+                for(int i = running.size() - 1; i >= 0; i--){
+                    Worker worker = running.get(i);
+                    if(!worker.step()){
+                        running.remove(i);
+                        worker.finish();
+                    }
+                    else if(worker.active){
+                        working = true;
+                    }
+                }
+
+                if(working || running.isEmpty()){
+                    idleRounds = 0;
+                    continue;
+                }
+
+                //the executor had enough time to start the workers, the ones with work are run here
+                if(++idleRounds > YIELD_ROUNDS){
+                    for(int i = 1; i < workers.length; i++){
+                        Worker worker = workers[i];
+                        if(!worker.mailbox.isEmpty() && worker.claimed.compareAndSet(false, true)){
+                            running.add(worker);
+                            idleRounds = 0;
+                        }
+                    }
+                }
+                if(idleRounds > 0) backOff(running, idleRounds);
+            }
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        } finally {
+            for(Worker worker : running){
+                worker.finish();
+            }
+        }
+    }
+
+    /**
+     * waits for work without burning a core: yields first and then parks for a growing time, post and the end of the search wake it up
+     * @param idleRounds number of rounds without work so far, atleast 1
+     */
+    private void backOff(List<Worker> idleWorkers, int idleRounds){
+        if(idleRounds <= YIELD_ROUNDS){
+            Thread.yield();
+            return;
+        }
+
+        for(Worker worker : idleWorkers){
+            worker.parked = true;
+        }
+        //checked after parked is set, so a relaxation posted in between is seen here or wakes the thread
+        boolean mail = false;
+        for(Worker worker : idleWorkers){
+            mail |= !worker.mailbox.isEmpty();
+        }
+        if(!mail && activity.get() > 0){
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(16, idleRounds - YIELD_ROUNDS)));
+        }
+        for(Worker worker : idleWorkers){
+            worker.parked = false;
+        }
+    }
+
+    /**
+     * stops all workers after an exception, search throws it
+     */
+    private void fail(Throwable e){
+        if(failure == null) failure = e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+        finishSearch();
+    }
+
+    /**
+     * sets the activity to 0 and wakes up all parked workers, so they see that the search is finished
+     */
+    private void finishSearch(){
+        activity.set(0);
+        wakeUp();
+    }
+
+    private void wakeUp(){
+        for(Worker worker : workers){
+            Thread thread = worker.thread;
+            if(thread != null) LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return the id of the worker that owns the cell, a hash of the block of the cell
+     */
+    private int getOwner(int index){
+        int block = (grid.getY(index) >>> BLOCK_SHIFT) * blocksX + (grid.getX(index) >>> BLOCK_SHIFT);
+        int hash = block * 0x9E3779B9;
+        return (hash >>> 1) % workers.length;
+    }
+
+    private class Worker {
+
+        private final int id;
+
+        private final ConcurrentLinkedQueue<Batch> mailbox = new ConcurrentLinkedQueue<>();
+
+        // set by the thread that runs the worker, the executor or the calling thread of search
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        // the thread that runs the worker, null before it started
+        private volatile Thread thread;
+
+        // true while the thread of the worker is parked or about to park, see backOff
+        private volatile boolean parked;
+
+        // only accessed by the thread that runs the worker
+        private boolean active;
+        private int rounds;
+
+        // relaxations for every other worker that are sent at the end of the round
+        private final Batch[] outgoing = new Batch[workers.length];
+
+        // binary min heap, a cell can be in it more than once. entries with a higher cost than the cost of the cell are skipped
+        private int[] cells = new int[64];
+        private long[] costs = new long[64];
+        private long[] priorities = new long[64];
+        private long[] heuristics = new long[64];
+        private int size;
+
+        //work of the worker for the SearchStats of the search, the heap has no decrease-key
+        private long expanded, generated, pushes, pops;
+        private int peakSize;
+
+        Worker(int id){
+            this.id = id;
+        }
+
+        /**
+         * runs the worker on a thread of the executor, an exception stops all workers and is thrown by search
+         */
+        void runSafely(){
+            try {
+                List<Worker> self = Collections.singletonList(this);
+                int idleRounds = 0;
+                while(step()){
+                    idleRounds = active ? 0 : idleRounds + 1;
+                    if(idleRounds > 0) backOff(self, idleRounds);
+                }
+            } catch (RuntimeException | Error e) {
+                fail(e);
+            } finally {
+                context.addWork(expanded, generated, pushes, pops, 0, peakSize);
+            }
+        }
+
+        /**
+         * adds the work of a worker that was run by the calling thread to the context
+         */
+        void finish(){
+            context.addWork(expanded, generated, pushes, pops, 0, peakSize);
+            if(id != 0) finished.countDown();
+        }
+
+        /**
+         * runs one round: the mailbox and up to EXPANSIONS_PER_ROUND cells if the worker is active,
+         * otherwise it only checks whether relaxations arrived
+         * @return false if the search is finished
+         */
+        boolean step(){
+            if(thread == null) thread = Thread.currentThread();
+
+            if(active){
+                if(failure != null) return false;
+
+                //a search with a deadline stops all workers, checked once per round since a round polls EXPANSIONS_PER_ROUND cells
+                if(context.shouldStop(++rounds * EXPANSIONS_PER_ROUND)){
+                    finishSearch();
+                    return false;
+                }
+                processMailbox();
+
+                for(int i = 0; i < EXPANSIONS_PER_ROUND && size > 0; i++){
+                    expandNext();
+                }
+                flush();
+
+                if(hasWork() || !mailbox.isEmpty()) return true;
+
+                //nothing left that can lead to a cheaper path
+                active = false;
+                size = 0;
+                if(activity.decrementAndGet() > 0) return true;
+
+                wakeUp();
+                return false;
+            }
+
+            if(activity.get() <= 0) return false;
+
+            if(!mailbox.isEmpty()){
+                //active again before the relaxations count as processed, so the activity cant drop to 0 in between
+                activity.incrementAndGet();
+                active = true;
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the heap contains a cell that can lead to a path cheaper than the best one
+         */
+        private boolean hasWork(){
+            return size > 0 && priorities[0] < context.getBestCost();
+        }
+
+        private void processMailbox(){
+            Batch batch;
+            while((batch = mailbox.poll()) != null){
+                for(int i = 0; i < batch.size; i++){
+                    relax(batch.cells[i], batch.costs[i], batch.predecessors[i]);
+                }
+                activity.addAndGet(-batch.size);
+            }
+        }
+
+        private void expandNext(){
+            long priority = priorities[0];
+            long cost = costs[0];
+            int cell = poll();
+
+            if(priority >= context.getBestCost()){
+                //every other cell of the heap has a higher priority
+                size = 0;
+                return;
+            }
+
+            //a cheaper way to the cell was found after this entry was inserted
+            if(cost > context.getCostToReach(cell, true)) return;
+
+            context.setStatus(cell, 1);
+
+            int mask = grid.getNeighbourMask(cell);
+            expanded++;
+            generated += Integer.bitCount(mask);
+            while(mask != 0){
+                int direction = Integer.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+
+                int neighbour = cell + grid.getDirectionOffset(direction);
+                long costToReach = cost + grid.getStepCost(cell, direction);
+
+                int owner = getOwner(neighbour);
+                if(owner == id){
+                    relax(neighbour, costToReach, cell);
+                }
+                else{
+                    send(owner, neighbour, costToReach, cell);
+                }
+            }
+        }
+
+        /**
+         * only called by the owner of the cell
+         */
+        void relax(int cell, long costToReach, int predecessor){
+            if(costToReach >= context.getCostToReach(cell, true)) return;
+
+            context.setCostToReach(cell, costToReach, true);
+            context.setPredecessor(cell, predecessor, true);
+
+            if(cell == end){
+                context.offerMeetingPoint(cell, costToReach);
+                return;
+            }
+
+            long heuristic = end < 0 ? 0 : grid.estimateCost(cell, endX, endY);
+            if(costToReach + heuristic < context.getBestCost()) insert(cell, costToReach, heuristic);
+        }
+
+        private void send(int owner, int cell, long costToReach, int predecessor){
+            Batch batch = outgoing[owner];
+            if(batch == null){
+                batch = new Batch();
+                outgoing[owner] = batch;
+            }
+
+            batch.add(cell, costToReach, predecessor);
+            if(batch.size == BATCH_SIZE){
+                post(owner, batch);
+                outgoing[owner] = null;
+            }
+        }
+
+        private void flush(){
+            for(int owner = 0; owner < outgoing.length; owner++){
+                if(outgoing[owner] != null){
+                    post(owner, outgoing[owner]);
+                    outgoing[owner] = null;
+                }
+            }
+        }
+
+        void post(int owner, Batch batch){
+            //counted before it can be received
+            activity.addAndGet(batch.size);
+
+            Worker receiver = workers[owner];
+            receiver.mailbox.add(batch);
+            if(receiver.parked) LockSupport.unpark(receiver.thread);
+        }
+
+        private void insert(int cell, long cost, long heuristic){
+            if(size == cells.length){
+                cells = Arrays.copyOf(cells, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+                heuristics = Arrays.copyOf(heuristics, size * 2);
+            }
+
+            long priority = cost + heuristic;
+            int index = size++;
+            pushes++;
+            if(size > peakSize) peakSize = size;
+            while(index > 0){
+                int parent = (index - 1) >>> 1;
+                if(!isLower(priority, heuristic, priorities[parent], heuristics[parent])) break;
+
+                move(parent, index);
+                index = parent;
+            }
+            set(index, cell, cost, priority, heuristic);
+        }
+
+        private int poll(){
+            int cell = cells[0];
+            size--;
+            pops++;
+            if(size == 0) return cell;
+
+            int last = size;
+            long priority = priorities[last];
+            long heuristic = heuristics[last];
+            int index = 0;
+            while(true){
+                int child = 2 * index + 1;
+                if(child >= size) break;
+                if(child + 1 < size && isLower(priorities[child + 1], heuristics[child + 1], priorities[child], heuristics[child])) child++;
+                if(!isLower(priorities[child], heuristics[child], priority, heuristic)) break;
+
+                move(child, index);
+                index = child;
+            }
+            set(index, cells[last], costs[last], priority, heuristic);
+            return cell;
+        }
+
+        private boolean isLower(long priority, long heuristic, long otherPriority, long otherHeuristic){
+            return priority < otherPriority || (priority == otherPriority && heuristic < otherHeuristic);
+        }
+
+        private void move(int from, int to){
+            set(to, cells[from], costs[from], priorities[from], heuristics[from]);
+        }
+
+        private void set(int index, int cell, long cost, long priority, long heuristic){
+            cells[index] = cell;
+            costs[index] = cost;
+            priorities[index] = priority;
+            heuristics[index] = heuristic;
+        }
+    }
+
+    /**
+     * relaxations for one worker
+     */
+    private static class Batch {
+
+        private final int[] cells = new int[BATCH_SIZE];
+        private final long[] costs = new long[BATCH_SIZE];
+        private final int[] predecessors = new int[BATCH_SIZE];
+        private int size;
+
+        static Batch of(int cell, long cost, int predecessor){
+            Batch batch = new Batch();
+            batch.add(cell, cost, predecessor);
+            return batch;
+        }
+
+        void add(int cell, long cost, int predecessor){
+            cells[size] = cell;
+            costs[size] = cost;
+            predecessors[size] = predecessor;
+            size++;
+        }
+    }
+}
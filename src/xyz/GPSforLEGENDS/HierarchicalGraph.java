@@ -0,0 +1,556 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * abstraction layer over a NodeGrid for hierarchical pathfinding (HPA*, Botea, Müller and Schaeffer 2004)
+ * https://webdocs.cs.ualberta.ca/~mmueller/ps/hpastar.pdf
+ * the grid is partitioned into square clusters. the cells where a path can cross from one cluster into another are entrances,
+ * and the distances between all entrances of a cluster are precomputed.
+ * a query is first answered on this abstract graph of entrances and afterwards only the segments of the abstract path are refined cell by cell.
+ * the found paths are near optimal, but not always the shortest ones
+ */
+public class HierarchicalGraph {
+
+    //straight entrances that are at least this long get a transition at both ends instead of one in the middle
+    private static final int MIN_DOUBLE_TRANSITION_LENGTH = 6;
+
+    private final NodeGrid grid;
+
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+
+    //row-major, index = clusterY * clustersX + clusterX. replaced as a whole when a cluster is rebuilt
+    private final AtomicReferenceArray<Cluster> clusters;
+
+    //workspace for the searches inside of a single cluster, one per thread
+    private final ThreadLocal<ClusterSearch> clusterSearches;
+
+    // version of the grid the clusters were checked against the last time
+    private volatile int gridVersion;
+
+    /**
+     * Constructor
+     * builds the abstract graph, the clusters are built in parallel on the common fork join pool
+     * @param grid the grid to build the graph for, not null
+     * @param clusterSize the width and height of a cluster in cells, atleast 2
+     */
+    public HierarchicalGraph(NodeGrid grid, int clusterSize){
+        this(grid, clusterSize, null);
+    }
+
+    /**
+     * Constructor for a graph that is built for a search with a deadline.
+     * the clusters that are not built yet when the control stops are missing, so the caller has to drop the graph if control.isStopped() afterwards
+     * @param control the deadline of the search that needs the graph, null if the graph is built completely
+     */
+    HierarchicalGraph(NodeGrid grid, int clusterSize, SearchControl control){
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(clusterSize < 2) throw new IllegalArgumentException("The cluster size has to be atleast 2");
+
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        this.clustersX = (grid.getWidth() + clusterSize - 1) / clusterSize;
+        this.clustersY = (grid.getHeight() + clusterSize - 1) / clusterSize;
+        this.clusters = new AtomicReferenceArray<>(clustersX * clustersY);
+        this.clusterSearches = ThreadLocal.withInitial(() -> new ClusterSearch(clusterSize));
+        this.gridVersion = grid.getVersion();
+
+        IntStream.range(0, clustersX * clustersY).parallel()
+                .forEach(cluster -> {
+                    if(control == null || !control.shouldStop()) clusters.set(cluster, buildCluster(cluster % clustersX, cluster / clustersX));
+                });
+    }
+
+    /**
+     * rebuilds the entrances and distances of the cluster and of all clusters around it, since they share the borders of the cluster.
+     * has to be called after the traversability of a cell of the cluster changed, if the graph is searched without AStar, which calls update.
+     * queries that run at the same time might still use the old data
+     * @param clusterX x coordinate of the cluster (not of a cell)
+     * @param clusterY y coordinate of the cluster (not of a cell)
+     */
+    public void rebuildCluster(int clusterX, int clusterY){
+        if(clusterX < 0 || clusterX >= clustersX || clusterY < 0 || clusterY >= clustersY){
+            throw new IllegalArgumentException("The cluster is outside of the grid");
+        }
+
+        for(int y = Math.max(0, clusterY - 1); y <= Math.min(clustersY - 1, clusterY + 1); y++){
+            for(int x = Math.max(0, clusterX - 1); x <= Math.min(clustersX - 1, clusterX + 1); x++){
+                clusters.set(y * clustersX + x, buildCluster(x, y));
+            }
+        }
+    }
+
+    /**
+     * @return true if a cell of the grid changed after the graph was built or updated, the changed clusters might not be rebuilt yet
+     */
+    public boolean isOutdated(){
+        return grid.getVersion() != gridVersion;
+    }
+
+    /**
+     * rebuilds every cluster in which the traversability of a cell or of a cell around it changed, in parallel on the common fork join pool.
+     * the changed cells are read from the change log of the grid, only after more than NodeGrid.CHANGE_LOG_SIZE changes all clusters are rebuilt.
+     * AStar updates an outdated graph before a hierarchical search
+     */
+    public void update(){
+        update(null);
+    }
+
+    /**
+     * rebuilds the changed clusters until the control stops, the graph stays outdated then and the next update rebuilds the rest
+     * @param control the deadline of the search that needs the graph, null if all changed clusters are rebuilt
+     * @return false if the control stopped the update
+     */
+    synchronized boolean update(SearchControl control){
+        //read first, a cell that changes during the update leaves the graph outdated
+        int version = grid.getVersion();
+        if(version == gridVersion) return true;
+
+        int[] changedCells = grid.getChangedCells(gridVersion, version);
+        BitSet dirty = new BitSet(clustersX * clustersY);
+        if(changedCells == null){
+            dirty.set(0, clustersX * clustersY);
+        }
+        else{
+            for(int cell : changedCells){
+                markDirty(dirty, grid.getX(cell), grid.getY(cell));
+            }
+        }
+
+        dirty.stream().parallel().forEach(index -> {
+            if(control == null || !control.shouldStop()) clusters.set(index, buildCluster(index % clustersX, index / clustersX));
+        });
+        if(control != null && control.isStopped()) return false;
+
+        gridVersion = version;
+        return true;
+    }
+
+    /**
+     * marks the cluster of the cell and the clusters next to it if the cell is on their border, the entrances of both depend on it
+     */
+    private void markDirty(BitSet dirty, int x, int y){
+        int minX = Math.max(0, (x - 1) / clusterSize);
+        int maxX = Math.min(clustersX - 1, (x + 1) / clusterSize);
+        int minY = Math.max(0, (y - 1) / clusterSize);
+        int maxY = Math.min(clustersY - 1, (y + 1) / clusterSize);
+
+        for(int clusterY = minY; clusterY <= maxY; clusterY++){
+            dirty.set(clusterY * clustersX + minX, clusterY * clustersX + maxX + 1);
+        }
+    }
+
+    public NodeGrid getGrid() {
+        return grid;
+    }
+
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    public int getClustersX() {
+        return clustersX;
+    }
+
+    public int getClustersY() {
+        return clustersY;
+    }
+
+    /**
+     * @return the number of entrances of the cluster
+     */
+    public int getEntranceCount(int clusterX, int clusterY){
+        return clusters.get(clusterY * clustersX + clusterX).entrances.length;
+    }
+
+    /**
+     * finds a path on the abstract graph and refines it. the predecessors from start of the context describe the path afterwards
+     * @param context the state of the search, has to be reset before the search
+     * @param start index of the start cell
+     * @param end index of the end cell
+     * @param openListType the open list of the abstract search
+     */
+    void search(SearchContext context, int start, int end, OpenListType openListType){
+        Cluster startCluster = getCluster(start);
+        Cluster endCluster = getCluster(end);
+        ClusterSearch clusterSearch = clusterSearches.get();
+
+        //connect start and end to the entrances of their clusters
+        clusterSearch.run(grid, startCluster, start, -1);
+        long[] startDistances = clusterSearch.getCosts(grid, startCluster.entrances);
+
+        clusterSearch.run(grid, endCluster, end, -1);
+        long[] endDistances = clusterSearch.getCosts(grid, endCluster.entrances);
+        long directDistance = startCluster == endCluster ? clusterSearch.getCost(grid, start) : Long.MAX_VALUE;
+
+        OpenList openList = context.getOpenList(true, openListType);
+        context.setCostToReach(start, 0, true);
+        long heuristic = calculateHeuristicCost(start, end);
+        openList.insertOrUpdate(start, heuristic, heuristic);
+
+        boolean found = false;
+        int polls = 0;
+        //work of the abstract search for its SearchStats
+        long expanded = 0, generated = 0;
+        while(!openList.isEmpty()){
+            //a search with a deadline stops early, the refinement afterwards is bounded by the clusters on the path
+            if(context.shouldStop(++polls)) break;
+
+            int current = openList.poll();
+
+            if(current == end){
+                found = true;
+                break;
+            }
+            context.setStatus(current, 1);
+            expanded++;
+
+            Cluster cluster = getCluster(current);
+            int entrance = Arrays.binarySearch(cluster.entrances, current);
+
+            if(current == start){
+                generated += startDistances.length;
+                for(int i = 0; i < startDistances.length; i++){
+                    relax(context, openList, current, startCluster.entrances[i], startDistances[i], end);
+                }
+            }
+
+            if(entrance >= 0){
+                int entrances = cluster.entrances.length;
+                generated += entrances - 1 + cluster.links[entrance].length;
+                for(int i = 0; i < entrances; i++){
+                    if(i != entrance) relax(context, openList, current, cluster.entrances[i], cluster.distances[entrance * entrances + i], end);
+                }
+                for(int link : cluster.links[entrance]){
+                    relax(context, openList, current, link, grid.getMoveCost(current, link), end);
+                }
+            }
+
+            if(cluster == endCluster && (current == start || entrance >= 0)){
+                generated++;
+                if(current == start) relax(context, openList, current, end, directDistance, end);
+                else if(entrance >= 0) relax(context, openList, current, end, endDistances[entrance], end);
+            }
+        }
+
+        //the work of the abstract search, the refinement is not counted
+        context.addWork(expanded, generated, openList);
+        if(!found) return;
+
+        //abstract path from start to end
+        List<Integer> abstractPath = new ArrayList<>();
+        for(int current = end; current >= 0; current = context.getPredecessor(current, true)){
+            abstractPath.add(current);
+        }
+
+        //refine every segment inside of its cluster and write the path into the context
+        context.reset();
+        int previous = start;
+        for(int i = abstractPath.size() - 2; i >= 0; i--){
+            int next = abstractPath.get(i);
+            Cluster cluster = getCluster(previous);
+
+            if(cluster == getCluster(next)){
+                clusterSearch.run(grid, cluster, previous, next);
+
+                //a cell changed after the cluster was built, no path is better than a broken one
+                if(clusterSearch.getCost(grid, next) == Long.MAX_VALUE){
+                    context.reset();
+                    return;
+                }
+                clusterSearch.writePath(grid, context, next);
+            }
+            //entrances of different clusters are neighbours
+            else{
+                if(!isStep(previous, next)){
+                    context.reset();
+                    return;
+                }
+                context.setPredecessor(next, previous, true);
+            }
+            previous = next;
+        }
+
+        context.getAndSetSolved(true);
+        context.setMeetingPoint(end);
+    }
+
+    private void relax(SearchContext context, OpenList openList, int current, int neighbour, long cost, int end){
+        if(cost == Long.MAX_VALUE || context.getStatus(neighbour) != 0) return;
+
+        long costToReach = context.getCostToReach(current, true) + cost;
+        if(costToReach >= context.getCostToReach(neighbour, true)) return;
+
+        context.setCostToReach(neighbour, costToReach, true);
+        context.setPredecessor(neighbour, current, true);
+        long heuristic = calculateHeuristicCost(neighbour, end);
+        openList.insertOrUpdate(neighbour, costToReach + heuristic, heuristic);
+    }
+
+    /**
+     * @return true if both cells are traversable neighbours
+     */
+    private boolean isStep(int from, int to){
+        return grid.isTraversable(from) && grid.isTraversable(to)
+                && Math.abs(grid.getX(from) - grid.getX(to)) <= 1 && Math.abs(grid.getY(from) - grid.getY(to)) <= 1;
+    }
+
+    private Cluster getCluster(int index){
+        return clusters.get((grid.getY(index) / clusterSize) * clustersX + grid.getX(index) / clusterSize);
+    }
+
+    /**
+     * finds the entrances of the cluster on all of its borders and computes the distances between them
+     */
+    private Cluster buildCluster(int clusterX, int clusterY){
+        int x0 = clusterX * clusterSize;
+        int y0 = clusterY * clusterSize;
+        int width = Math.min(clusterSize, grid.getWidth() - x0);
+        int height = Math.min(clusterSize, grid.getHeight() - y0);
+        int x1 = x0 + width - 1;
+        int y1 = y0 + height - 1;
+
+        //pairs of (cell of this cluster, cell of the other cluster)
+        List<int[]> transitions = new ArrayList<>();
+
+        //left, right, top, bottom
+        if(x0 > 0) scanBorder(transitions, x0, y0, x0 - 1, y0, 0, 1, height);
+        if(x1 < grid.getWidth() - 1) scanBorder(transitions, x1, y0, x1 + 1, y0, 0, 1, height);
+        if(y0 > 0) scanBorder(transitions, x0, y0, x0, y0 - 1, 1, 0, width);
+        if(y1 < grid.getHeight() - 1) scanBorder(transitions, x0, y1, x0, y1 + 1, 1, 0, width);
+
+        //the corners connect diagonally to the clusters that only touch this one at the corner
+        addCorner(transitions, x0, y0, x0 - 1, y0 - 1);
+        addCorner(transitions, x1, y0, x1 + 1, y0 - 1);
+        addCorner(transitions, x0, y1, x0 - 1, y1 + 1);
+        addCorner(transitions, x1, y1, x1 + 1, y1 + 1);
+
+        int[] entrances = transitions.stream().mapToInt(transition -> transition[0]).distinct().sorted().toArray();
+
+        int[][] links = new int[entrances.length][];
+        for(int i = 0; i < entrances.length; i++){
+            int entrance = entrances[i];
+            links[i] = transitions.stream().filter(transition -> transition[0] == entrance)
+                    .mapToInt(transition -> transition[1]).distinct().toArray();
+        }
+
+        Cluster cluster = new Cluster(x0, y0, width, height, entrances, links);
+
+        ClusterSearch clusterSearch = clusterSearches.get();
+        for(int i = 0; i < entrances.length; i++){
+            clusterSearch.run(grid, cluster, entrances[i], -1);
+            long[] costs = clusterSearch.getCosts(grid, entrances);
+            System.arraycopy(costs, 0, cluster.distances, i * entrances.length, entrances.length);
+        }
+        return cluster;
+    }
+
+    /**
+     * finds the transitions over one border of the cluster
+     * every maximal run of cells that can be crossed straight gets one transition in the middle, or two at its ends if it is long.
+     * diagonal crossings that are not next to a straight one get their own transition
+     * @param ownX first cell of the border inside of the cluster
+     * @param otherX first cell of the border inside of the other cluster
+     * @param dx direction along the border
+     * @param length number of cells along the border
+     */
+    private void scanBorder(List<int[]> transitions, int ownX, int ownY, int otherX, int otherY, int dx, int dy, int length){
+        boolean[] straight = new boolean[length];
+        for(int i = 0; i < length; i++){
+            straight[i] = isWalkable(ownX + i * dx, ownY + i * dy) && isWalkable(otherX + i * dx, otherY + i * dy);
+        }
+
+        int runStart = -1;
+        for(int i = 0; i <= length; i++){
+            if(i < length && straight[i]){
+                if(runStart < 0) runStart = i;
+                continue;
+            }
+            if(runStart >= 0){
+                int runEnd = i - 1;
+                if(runEnd - runStart + 1 >= MIN_DOUBLE_TRANSITION_LENGTH){
+                    addTransition(transitions, ownX, ownY, otherX, otherY, dx, dy, runStart, runStart);
+                    addTransition(transitions, ownX, ownY, otherX, otherY, dx, dy, runEnd, runEnd);
+                }
+                else{
+                    int middle = (runStart + runEnd) / 2;
+                    addTransition(transitions, ownX, ownY, otherX, otherY, dx, dy, middle, middle);
+                }
+                runStart = -1;
+            }
+        }
+
+        for(int i = 0; i < length; i++){
+            if(straight[i] || !isWalkable(ownX + i * dx, ownY + i * dy)) continue;
+
+            if(i + 1 < length && !straight[i + 1] && isWalkable(otherX + (i + 1) * dx, otherY + (i + 1) * dy)){
+                addTransition(transitions, ownX, ownY, otherX, otherY, dx, dy, i, i + 1);
+            }
+            if(i > 0 && !straight[i - 1] && isWalkable(otherX + (i - 1) * dx, otherY + (i - 1) * dy)){
+                addTransition(transitions, ownX, ownY, otherX, otherY, dx, dy, i, i - 1);
+            }
+        }
+    }
+
+    private void addTransition(List<int[]> transitions, int ownX, int ownY, int otherX, int otherY, int dx, int dy, int ownOffset, int otherOffset){
+        transitions.add(new int[]{
+                grid.index(ownX + ownOffset * dx, ownY + ownOffset * dy),
+                grid.index(otherX + otherOffset * dx, otherY + otherOffset * dy)});
+    }
+
+    private void addCorner(List<int[]> transitions, int ownX, int ownY, int otherX, int otherY){
+        if(isWalkable(ownX, ownY) && isWalkable(otherX, otherY)){
+            transitions.add(new int[]{grid.index(ownX, ownY), grid.index(otherX, otherY)});
+        }
+    }
+
+    private boolean isWalkable(int x, int y){
+        return grid.contains(x, y) && grid.isTraversable(grid.index(x, y));
+    }
+
+    /**
+     * octile distance times the lowest cost of a cell, the precomputed distances are never shorter
+     */
+    private long calculateHeuristicCost(int n, int end){
+        return grid.estimateCost(n, grid.getX(end), grid.getY(end));
+    }
+
+    /**
+     * a rectangle of the grid with its entrances
+     */
+    private static class Cluster {
+
+        private final int x0, y0, width, height;
+
+        //sorted cell indices
+        private final int[] entrances;
+
+        //distance from entrance i to entrance j inside of the cluster at i * entrances + j, Long.MAX_VALUE if not connected
+        private final long[] distances;
+
+        //for every entrance the cells of other clusters it is connected to
+        private final int[][] links;
+
+        Cluster(int x0, int y0, int width, int height, int[] entrances, int[][] links){
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+            this.entrances = entrances;
+            this.links = links;
+            this.distances = new long[entrances.length * entrances.length];
+        }
+
+        int toLocal(NodeGrid grid, int index){
+            return (grid.getY(index) - y0) * width + grid.getX(index) - x0;
+        }
+
+        int toGlobal(NodeGrid grid, int local){
+            return grid.index(x0 + local % width, y0 + local / width);
+        }
+    }
+
+    /**
+     * Dijkstra that never leaves a single cluster, works on local cell indices of the cluster
+     */
+    private static class ClusterSearch {
+
+        private final long[] costs;
+        private final int[] predecessors;
+        private final boolean[] closed;
+        private final IndexedDaryHeap openList;
+
+        private final int[] neighbours = new int[8];
+
+        //cluster of the last run
+        private Cluster cluster;
+
+        ClusterSearch(int clusterSize){
+            int cells = clusterSize * clusterSize;
+            costs = new long[cells];
+            predecessors = new int[cells];
+            closed = new boolean[cells];
+            openList = new IndexedDaryHeap(cells, 4);
+        }
+
+        /**
+         * @param source global index of the start cell
+         * @param target global index of the cell where the search stops, -1 to reach all cells of the cluster
+         */
+        void run(NodeGrid grid, Cluster cluster, int source, int target){
+            this.cluster = cluster;
+            int cells = cluster.width * cluster.height;
+            Arrays.fill(costs, 0, cells, Long.MAX_VALUE);
+            Arrays.fill(predecessors, 0, cells, -1);
+            Arrays.fill(closed, 0, cells, false);
+            openList.clear();
+
+            int localTarget = target < 0 ? -1 : cluster.toLocal(grid, target);
+            int localSource = cluster.toLocal(grid, source);
+            costs[localSource] = 0;
+            openList.insertOrUpdate(localSource, 0, 0);
+
+            while(!openList.isEmpty()){
+                int current = openList.poll();
+                if(current == localTarget) return;
+                closed[current] = true;
+
+                int index = cluster.toGlobal(grid, current);
+                int count = grid.getNeighbours(index, neighbours);
+
+                for(int i = 0; i < count; i++){
+                    int nx = grid.getX(neighbours[i]);
+                    int ny = grid.getY(neighbours[i]);
+                    if(nx < cluster.x0 || nx >= cluster.x0 + cluster.width || ny < cluster.y0 || ny >= cluster.y0 + cluster.height) continue;
+
+                    int neighbour = cluster.toLocal(grid, neighbours[i]);
+                    if(closed[neighbour]) continue;
+
+                    long cost = costs[current] + grid.getMoveCost(index, neighbours[i]);
+                    if(cost >= costs[neighbour]) continue;
+
+                    costs[neighbour] = cost;
+                    predecessors[neighbour] = current;
+                    openList.insertOrUpdate(neighbour, cost, 0);
+                }
+            }
+        }
+
+        /**
+         * @param index global index of a cell of the cluster of the last run
+         * @return the cost to reach the cell in the last run, Long.MAX_VALUE if it was not reached
+         */
+        long getCost(NodeGrid grid, int index){
+            return costs[cluster.toLocal(grid, index)];
+        }
+
+        long[] getCosts(NodeGrid grid, int[] indices){
+            long[] result = new long[indices.length];
+            for(int i = 0; i < indices.length; i++){
+                result[i] = getCost(grid, indices[i]);
+            }
+            return result;
+        }
+
+        /**
+         * sets the predecessors from start of all cells on the path of the last run from source to target
+         */
+        void writePath(NodeGrid grid, SearchContext context, int target){
+            int current = cluster.toLocal(grid, target);
+            int predecessor = predecessors[current];
+
+            while(predecessor >= 0){
+                context.setPredecessor(cluster.toGlobal(grid, current), cluster.toGlobal(grid, predecessor), true);
+                current = predecessor;
+                predecessor = predecessors[current];
+            }
+        }
+    }
+}
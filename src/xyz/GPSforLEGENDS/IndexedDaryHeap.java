@@ -0,0 +1,227 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * d-ary min heap over cell indices
+ * the position of every cell in the heap is stored, so contains is O(1) and a priority change (decrease-key) is O(log n)
+ * priority and heuristic are cached next to the cell, so a comparison never has to recompute them
+ */
+class IndexedDaryHeap implements OpenList {
+
+    private final int arity;
+
+    private int[] heap;
+    private long[] priorities;
+    private long[] heuristics;
+    private int size;
+
+    // position in the heap + 1 for every cell, 0 = not in the heap
+    private final int[] position;
+
+    // counters since the last clear, see OpenList
+    private long pushes, pops, decreaseKeys;
+    private int peakSize;
+
+    /**
+     * Constructor
+     * @param cells number of cells of the grid
+     * @param arity number of children per heap node, atleast 2
+     */
+    IndexedDaryHeap(int cells, int arity){
+        if(arity < 2) throw new IllegalArgumentException("The arity of the heap has to be atleast 2");
+
+        this.arity = arity;
+        this.position = new int[cells];
+        this.heap = new int[64];
+        this.priorities = new long[64];
+        this.heuristics = new long[64];
+    }
+
+    @Override
+    public void insertOrUpdate(int cell, long priority, long heuristic) {
+        int index = position[cell] - 1;
+
+        if(index < 0){
+            if(size == heap.length){
+                heap = Arrays.copyOf(heap, size * 2);
+                priorities = Arrays.copyOf(priorities, size * 2);
+                heuristics = Arrays.copyOf(heuristics, size * 2);
+            }
+            index = size++;
+            move(cell, priority, heuristic, index);
+            siftUp(index);
+
+            pushes++;
+            if(size > peakSize) peakSize = size;
+        }
+        else if(isLower(priority, heuristic, priorities[index], heuristics[index])){
+            decreaseKeys++;
+            priorities[index] = priority;
+            heuristics[index] = heuristic;
+            siftUp(index);
+        }
+        else{
+            decreaseKeys++;
+            priorities[index] = priority;
+            heuristics[index] = heuristic;
+            siftDown(index);
+        }
+    }
+
+    @Override
+    public int poll() {
+        if(size == 0) throw new NoSuchElementException("The open list is empty");
+
+        int cell = heap[0];
+        position[cell] = 0;
+        pops++;
+
+        size--;
+        if(size > 0){
+            move(heap[size], priorities[size], heuristics[size], 0);
+            siftDown(0);
+        }
+        return cell;
+    }
+
+    /**
+     * @return the cell with the lowest priority without removing it, the heap must not be empty
+     */
+    int peek(){
+        return heap[0];
+    }
+
+    /**
+     * @return the priority of the cell returned by peek
+     */
+    long peekPriority(){
+        return priorities[0];
+    }
+
+    /**
+     * @return the heuristic of the cell returned by peek
+     */
+    long peekHeuristic(){
+        return heuristics[0];
+    }
+
+    /**
+     * removes the cell if it is in the heap
+     */
+    void remove(int cell){
+        int index = position[cell] - 1;
+        if(index < 0) return;
+
+        position[cell] = 0;
+        size--;
+        if(index == size) return;
+
+        //the last entry fills the gap and can belong above or below it
+        int last = heap[size];
+        move(last, priorities[size], heuristics[size], index);
+        siftUp(index);
+        siftDown(position[last] - 1);
+    }
+
+    @Override
+    public boolean contains(int cell) {
+        return position[cell] != 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(int i = 0; i < size; i++){
+            position[heap[i]] = 0;
+        }
+        size = 0;
+        pushes = 0;
+        pops = 0;
+        decreaseKeys = 0;
+        peakSize = 0;
+    }
+
+    @Override
+    public long getPushes() {
+        return pushes;
+    }
+
+    @Override
+    public long getPops() {
+        return pops;
+    }
+
+    @Override
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    @Override
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    private void siftUp(int index){
+        int cell = heap[index];
+        long priority = priorities[index];
+        long heuristic = heuristics[index];
+
+        while(index > 0){
+            int parent = (index - 1) / arity;
+            if(!isLower(priority, heuristic, priorities[parent], heuristics[parent])) break;
+
+            move(heap[parent], priorities[parent], heuristics[parent], index);
+            index = parent;
+        }
+        move(cell, priority, heuristic, index);
+    }
+
+    private void siftDown(int index){
+        int cell = heap[index];
+        long priority = priorities[index];
+        long heuristic = heuristics[index];
+
+        while(true){
+            int firstChild = index * arity + 1;
+            if(firstChild >= size) break;
+
+            //find the child with the lowest priority
+            int lastChild = Math.min(firstChild + arity, size);
+            int smallest = firstChild;
+            for(int child = firstChild + 1; child < lastChild; child++){
+                if(isLower(priorities[child], heuristics[child], priorities[smallest], heuristics[smallest])) smallest = child;
+            }
+
+            if(!isLower(priorities[smallest], heuristics[smallest], priority, heuristic)) break;
+
+            move(heap[smallest], priorities[smallest], heuristics[smallest], index);
+            index = smallest;
+        }
+        move(cell, priority, heuristic, index);
+    }
+
+    /**
+     * @return true if the first entry comes before the second one, ties of the priority are broken by the lower heuristic
+     */
+    private static boolean isLower(long priority, long heuristic, long otherPriority, long otherHeuristic){
+        return priority < otherPriority || (priority == otherPriority && heuristic < otherHeuristic);
+    }
+
+    private void move(int cell, long priority, long heuristic, int index){
+        heap[index] = cell;
+        priorities[index] = priority;
+        heuristics[index] = heuristic;
+        position[cell] = index + 1;
+    }
+}
@@ -0,0 +1,239 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Jump Point Search (Harabor and Grastien 2011) on a uniform cost, 8-connected grid
+ * http://users.cecs.anu.edu.au/~dharabor/data/papers/harabor-grastien-aaai11.pdf
+ * instead of adding every neighbour to the open list, the worker jumps in straight and diagonal lines until it finds a cell with a forced neighbour.
+ * only those jump points are added to the open list, which finds paths of the same length as AStar with far fewer open list operations
+ * diagonal moves are allowed between two blocked cells, like in the NodeGrid
+ */
+class JumpPointWorker implements Callable<Void> {
+
+    private NodeGrid grid;
+
+    private SearchContext context;
+
+    //cell indices
+    private int startIndex, endIndex;
+
+    private int endX, endY;
+
+    private OpenList openList;
+
+    //work of the search for its SearchStats, the successors are the jump points
+    private long expanded, generated;
+
+    /**
+     * Constructor
+     *
+     * @param grid
+     * @param context the state of the search, has to be reset before the search
+     * @param start index of the start cell
+     * @param end index of the end cell
+     * @param openListType the implementation of the open list
+     */
+    JumpPointWorker(NodeGrid grid, SearchContext context, int start, int end, OpenListType openListType) {
+        this.grid = grid;
+        this.context = context;
+        this.startIndex = start;
+        this.endIndex = end;
+        this.endX = grid.getX(end);
+        this.endY = grid.getY(end);
+        this.openList = context.getOpenList(true, openListType);
+    }
+
+    /**
+     * runs the search, the predecessors of all cells on the found path are set when the end is reached.
+     * a search with a deadline stops early without a frontier, the predecessors only lead from jump point to jump point
+     */
+    private void jumpPointSearch() {
+        context.setCostToReach(startIndex, 0, true);
+        long heuristic = grid.estimateCost(startIndex, endX, endY);
+        openList.insertOrUpdate(startIndex, heuristic, heuristic);
+
+        int polls = 0;
+        while (!openList.isEmpty()) {
+            if (context.shouldStop(++polls)) break;
+
+            int currentNode = openList.poll();
+
+            if (currentNode == endIndex) {
+                fillInPath();
+                context.getAndSetSolved(true);
+                context.setMeetingPoint(currentNode);
+                break;
+            }
+
+            context.setStatus(currentNode, 1);
+            identifySuccessors(currentNode);
+            expanded++;
+        }
+        context.addWork(expanded, generated, openList);
+    }
+
+    /**
+     * jumps into every direction that is not pruned and adds the found jump points to the open list
+     *
+     * @param currentNode
+     */
+    private void identifySuccessors(int currentNode) {
+        int x = grid.getX(currentNode);
+        int y = grid.getY(currentNode);
+        int predecessor = context.getPredecessor(currentNode, true);
+
+        //the start node has no direction, so all neighbours are explored
+        if (predecessor < 0) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx != 0 || dy != 0) jumpFrom(currentNode, x, y, dx, dy);
+                }
+            }
+            return;
+        }
+
+        int dx = Integer.signum(x - grid.getX(predecessor));
+        int dy = Integer.signum(y - grid.getY(predecessor));
+
+        //diagonal
+        if (dx != 0 && dy != 0) {
+            jumpFrom(currentNode, x, y, dx, 0);
+            jumpFrom(currentNode, x, y, 0, dy);
+            jumpFrom(currentNode, x, y, dx, dy);
+
+            //forced neighbours
+            if (!isWalkable(x - dx, y)) jumpFrom(currentNode, x, y, -dx, dy);
+            if (!isWalkable(x, y - dy)) jumpFrom(currentNode, x, y, dx, -dy);
+        }
+        //horizontal
+        else if (dx != 0) {
+            jumpFrom(currentNode, x, y, dx, 0);
+
+            //forced neighbours
+            if (!isWalkable(x, y + 1)) jumpFrom(currentNode, x, y, dx, 1);
+            if (!isWalkable(x, y - 1)) jumpFrom(currentNode, x, y, dx, -1);
+        }
+        //vertical
+        else {
+            jumpFrom(currentNode, x, y, 0, dy);
+
+            //forced neighbours
+            if (!isWalkable(x + 1, y)) jumpFrom(currentNode, x, y, 1, dy);
+            if (!isWalkable(x - 1, y)) jumpFrom(currentNode, x, y, -1, dy);
+        }
+    }
+
+    /**
+     * jumps from the current node into the direction and adds the jump point to the open list
+     */
+    private void jumpFrom(int currentNode, int x, int y, int dx, int dy) {
+        int jumpPoint = jump(x, y, dx, dy);
+
+        //no jump point or already closed
+        if (jumpPoint < 0 || context.getStatus(jumpPoint) != 0) return;
+        generated++;
+
+        long costToReach = context.getCostToReach(currentNode, true) + calculateCostToReach(currentNode, jumpPoint);
+
+        if (costToReach >= context.getCostToReach(jumpPoint, true)) return;
+
+        context.setCostToReach(jumpPoint, costToReach, true);
+        context.setPredecessor(jumpPoint, currentNode, true);
+
+        long heuristic = grid.estimateCost(jumpPoint, endX, endY);
+        openList.insertOrUpdate(jumpPoint, costToReach + heuristic, heuristic);
+    }
+
+    /**
+     * moves from x, y into the direction until a jump point is found
+     *
+     * @return index of the jump point, -1 if the jump hits a wall or the border of the grid
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+
+            if (!isWalkable(x, y)) return -1;
+
+            int index = grid.index(x, y);
+            if (index == endIndex) return index;
+
+            //diagonal
+            if (dx != 0 && dy != 0) {
+                if ((!isWalkable(x - dx, y) && isWalkable(x - dx, y + dy))
+                        || (!isWalkable(x, y - dy) && isWalkable(x + dx, y - dy))) {
+                    return index;
+                }
+
+                //a diagonal jump stops if one of its straight jumps finds a jump point
+                if (jump(x, y, dx, 0) >= 0 || jump(x, y, 0, dy) >= 0) return index;
+            }
+            //horizontal
+            else if (dx != 0) {
+                if ((!isWalkable(x, y + 1) && isWalkable(x + dx, y + 1))
+                        || (!isWalkable(x, y - 1) && isWalkable(x + dx, y - 1))) {
+                    return index;
+                }
+            }
+            //vertical
+            else {
+                if ((!isWalkable(x + 1, y) && isWalkable(x + 1, y + dy))
+                        || (!isWalkable(x - 1, y) && isWalkable(x - 1, y + dy))) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    /**
+     * the predecessors only link the jump points of the path.
+     * sets the predecessors of all cells between two jump points, so the path can be tracked back cell by cell
+     */
+    private void fillInPath() {
+        int current = endIndex;
+        int jumpPoint = context.getPredecessor(current, true);
+
+        while (jumpPoint >= 0) {
+            int dx = Integer.signum(grid.getX(jumpPoint) - grid.getX(current));
+            int dy = Integer.signum(grid.getY(jumpPoint) - grid.getY(current));
+
+            int x = grid.getX(current);
+            int y = grid.getY(current);
+            int cell = current;
+            while (cell != jumpPoint) {
+                x += dx;
+                y += dy;
+                int next = grid.index(x, y);
+                context.setPredecessor(cell, next, true);
+                cell = next;
+            }
+
+            current = jumpPoint;
+            jumpPoint = context.getPredecessor(current, true);
+        }
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return grid.contains(x, y) && grid.isTraversable(grid.index(x, y));
+    }
+
+    /**
+     * calculates the cost to reach the jump point from node n.
+     * both are connected by a straight or diagonal line
+     *
+     * @param n
+     * @param jumpPoint
+     * @return
+     */
+    private long calculateCostToReach(int n, int jumpPoint) {
+        return NodeGrid.octileDistance(grid.getX(n) - grid.getX(jumpPoint), grid.getY(n) - grid.getY(jumpPoint));
+    }
+
+    @Override
+    public Void call() {
+        jumpPointSearch();
+        return null;
+    }
+}
@@ -0,0 +1,318 @@
+package xyz.GPSforLEGENDS;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * landmarks for the ALT heuristic (A*, Landmarks and Triangle inequality, Goldberg and Harrelson 2005)
+ * https://www.microsoft.com/en-us/research/publication/computing-the-shortest-path-a-search-meets-graph-theory/
+ * the distances from a few landmarks to every cell are precomputed. by the triangle inequality the cost from a cell to the end
+ * is atleast the difference of their distances to a landmark, which is a far better estimate than the octile distance on mazes and corridors.
+ * the landmarks are the traversable cells farthest from the center of the grid in equally sized angular sectors,
+ * one Dijkstra search per landmark runs in parallel on the common fork join pool.
+ * every distance is stored as unsigned short in units of a per landmark scale, rounded down, so the heuristic stays admissible
+ * but is not always consistent. the landmarks can be saved and opened alongside the grid with save(Path) and open(NodeGrid, Path)
+ * @see SearchAlgorithm#ALT
+ */
+public class Landmarks {
+
+    // distance of cells that are not connected to the landmark
+    static final int UNREACHABLE = 0xFFFF;
+
+    private final NodeGrid grid;
+
+    // cell index of every landmark
+    private final int[] cells;
+
+    // fixed point cost of one distance unit of every landmark
+    private final long[] scales;
+
+    // distance of cell c to landmark l as unsigned short at (c * count + l) * 2, little endian
+    private final ByteBuffer distances;
+
+    // version of the grid the distances were computed for
+    private final int gridVersion;
+
+    /**
+     * Constructor
+     * selects the landmarks and computes their distances to all cells in parallel on the common fork join pool
+     * @param grid the grid, not null
+     * @param count the number of landmarks, atleast 1. a grid with less traversable cells in some sectors gets fewer landmarks
+     * @exception IllegalArgumentException if count is lower than 1 or the distance table would be larger than 2 GB
+     */
+    public Landmarks(NodeGrid grid, int count){
+        this(grid, count, null);
+    }
+
+    /**
+     * Constructor for landmarks that are computed for a search with a deadline.
+     * a landmark whose Dijkstra search is stopped by the control keeps incomplete distances, so the caller has to drop the landmarks
+     * if control.isStopped() afterwards
+     * @param control the deadline of the search that needs the landmarks, null if the computation runs until it is finished
+     */
+    Landmarks(NodeGrid grid, int count, SearchControl control){
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(count < 1) throw new IllegalArgumentException("Atleast one landmark is needed");
+
+        long size = (long) grid.getWidth() * grid.getHeight() * count * 2;
+        if(size > Integer.MAX_VALUE) throw new IllegalArgumentException("The distance table of " + count + " landmarks is too large for the grid");
+
+        this.grid = grid;
+        this.gridVersion = grid.getVersion();
+        this.cells = selectLandmarks(grid, count);
+        this.scales = new long[cells.length];
+        this.distances = ByteBuffer.allocate(grid.getWidth() * grid.getHeight() * cells.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+
+        IntStream.range(0, cells.length).parallel().forEach(landmark -> computeDistances(landmark, control));
+    }
+
+    /**
+     * constructor for landmarks opened from a file
+     */
+    private Landmarks(NodeGrid grid, int[] cells, long[] scales, ByteBuffer distances){
+        this.grid = grid;
+        this.gridVersion = grid.getVersion();
+        this.cells = cells;
+        this.scales = scales;
+        this.distances = distances;
+    }
+
+    /**
+     * opens landmarks saved with save(Path), the distances are memory mapped like the cells of NodeGrid.open
+     * @param grid the grid the landmarks were computed for, not null
+     * @param file the landmark file, not null
+     * @return the landmarks
+     * @exception IOException if the file cant be read, is not a landmark file or was saved for a grid of another size
+     */
+    public static Landmarks open(NodeGrid grid, Path file) throws IOException {
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(file == null) throw new NullPointerException("Path file cant be null");
+
+        GridFile gridFile = GridFile.open(file);
+        if(gridFile.getWidth() != grid.getWidth() || gridFile.getHeight() != grid.getHeight()){
+            throw new IOException("The landmark file was saved for a grid of another size: " + file);
+        }
+
+        ByteBuffer cellSection = gridFile.getSection(GridFile.SECTION_LANDMARK_CELLS);
+        ByteBuffer scaleSection = gridFile.getSection(GridFile.SECTION_LANDMARK_SCALES);
+        ByteBuffer distances = gridFile.getSection(GridFile.SECTION_LANDMARK_DISTANCES);
+
+        int count = cellSection == null ? 0 : cellSection.capacity() / 4;
+        if(count == 0 || scaleSection == null || scaleSection.capacity() != count * 8
+                || distances == null || distances.capacity() != (long) grid.getWidth() * grid.getHeight() * count * 2){
+            throw new IOException("The landmark file has missing or invalid sections: " + file);
+        }
+
+        int[] cells = new int[count];
+        long[] scales = new long[count];
+        for(int i = 0; i < count; i++){
+            cells[i] = cellSection.getInt(i * 4);
+            scales[i] = scaleSection.getLong(i * 8);
+        }
+        return new Landmarks(grid, cells, scales, distances);
+    }
+
+    /**
+     * saves the landmarks and their distances into a binary file that can be opened with open(NodeGrid, Path)
+     * @param file the landmark file, an existing file is replaced. not null
+     * @exception IOException if the file cant be written
+     */
+    public void save(Path file) throws IOException {
+        if(file == null) throw new NullPointerException("Path file cant be null");
+
+        ByteBuffer cellSection = ByteBuffer.allocate(cells.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer scaleSection = ByteBuffer.allocate(cells.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for(int i = 0; i < cells.length; i++){
+            cellSection.putInt(i * 4, cells[i]);
+            scaleSection.putLong(i * 8, scales[i]);
+        }
+
+        Map<Integer, ByteBuffer> sections = new LinkedHashMap<>();
+        sections.put(GridFile.SECTION_LANDMARK_CELLS, cellSection);
+        sections.put(GridFile.SECTION_LANDMARK_SCALES, scaleSection);
+        sections.put(GridFile.SECTION_LANDMARK_DISTANCES, distances.duplicate());
+
+        GridFile.save(file, grid.getWidth(), grid.getHeight(), sections);
+    }
+
+    public NodeGrid getGrid(){
+        return grid;
+    }
+
+    /**
+     * @return the number of landmarks
+     */
+    public int getCount(){
+        return cells.length;
+    }
+
+    /**
+     * @return the cell of the landmark
+     */
+    public Node getLandmark(int landmark){
+        return grid.getNode(cells[landmark]);
+    }
+
+    /**
+     * the distances only stay lower bounds as long as no cell is opened, AStar computes outdated landmarks again before it uses them
+     * @return true if a cell of the grid changed after the landmarks were computed or opened
+     */
+    public boolean isOutdated(){
+        return grid.getVersion() != gridVersion;
+    }
+
+    /**
+     * @return the stored distances of the cell to all landmarks, looked up once per search for its end
+     */
+    int[] getDistances(int cell){
+        int[] result = new int[cells.length];
+        for(int landmark = 0; landmark < cells.length; landmark++){
+            result[landmark] = getDistance(cell, landmark);
+        }
+        return result;
+    }
+
+    /**
+     * admissible estimate of the fixed point cost between the cell and the end.
+     * the stored distances are rounded down, so the true difference is atleast one unit less than the difference of the stored ones
+     * @param endDistances the distances of the end, see getDistances
+     */
+    long estimateCost(int cell, int[] endDistances){
+        long estimate = 0;
+        int offset = cell * cells.length;
+        for(int landmark = 0; landmark < cells.length; landmark++){
+            int distance = distances.getShort((offset + landmark) << 1) & 0xFFFF;
+            int endDistance = endDistances[landmark];
+            if(distance == UNREACHABLE || endDistance == UNREACHABLE) continue;
+
+            estimate = Math.max(estimate, (Math.abs(distance - endDistance) - 1) * scales[landmark]);
+        }
+        return estimate;
+    }
+
+    private int getDistance(int cell, int landmark){
+        return distances.getShort((cell * cells.length + landmark) << 1) & 0xFFFF;
+    }
+
+    /**
+     * planar selection: the traversable cell farthest from the center of the grid in each of count angular sectors.
+     * landmarks behind the cells, seen from the searches, give the best estimates, and the border of the grid is behind most cells
+     * @return the cell indices of the landmarks, fewer than count if some sectors have no traversable cell
+     */
+    private static int[] selectLandmarks(NodeGrid grid, int count){
+        double centerX = (grid.getWidth() - 1) / 2.0;
+        double centerY = (grid.getHeight() - 1) / 2.0;
+
+        //per sector the squared distance to the center and the index of the farthest cell, the rows are scanned in parallel
+        double[][] farthest = IntStream.range(0, grid.getHeight()).parallel().mapToObj(y -> {
+            double[][] row = newSectors(count);
+            for(int x = 0; x < grid.getWidth(); x++){
+                int index = grid.index(x, y);
+                if(!grid.isTraversable(index)) continue;
+
+                double dx = x - centerX;
+                double dy = y - centerY;
+                int sector = (int) ((Math.atan2(dy, dx) + Math.PI) / (2 * Math.PI) * count) % count;
+                double distance = dx * dx + dy * dy;
+                if(distance > row[0][sector]){
+                    row[0][sector] = distance;
+                    row[1][sector] = index;
+                }
+            }
+            return row;
+        }).reduce(newSectors(count), (first, second) -> {
+            double[][] merged = newSectors(count);
+            for(int sector = 0; sector < count; sector++){
+                double[][] better = second[0][sector] > first[0][sector] ? second : first;
+                merged[0][sector] = better[0][sector];
+                merged[1][sector] = better[1][sector];
+            }
+            return merged;
+        });
+
+        List<Integer> landmarks = new ArrayList<>(count);
+        for(int sector = 0; sector < count; sector++){
+            if(farthest[1][sector] >= 0) landmarks.add((int) farthest[1][sector]);
+        }
+
+        int[] result = new int[landmarks.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = landmarks.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return distances of -1 and cell indices of -1 for every sector
+     */
+    private static double[][] newSectors(int count){
+        double[][] sectors = new double[2][count];
+        Arrays.fill(sectors[0], -1);
+        Arrays.fill(sectors[1], -1);
+        return sectors;
+    }
+
+    /**
+     * Dijkstra search from the landmark over the whole grid with a search context borrowed from the grid,
+     * the costs are scaled down so that the largest one fits into an unsigned short below UNREACHABLE
+     * @param control stops the search, null if it runs until it is finished
+     */
+    private void computeDistances(int landmark, SearchControl control){
+        if(control != null && control.shouldStop()) return;
+
+        SearchContext context = grid.acquireSearchContext();
+        try {
+            context.reset();
+            context.setControl(control);
+            OpenList openList = context.getOpenList(true, OpenListType.DARY_HEAP);
+
+            int start = cells[landmark];
+            context.setCostToReach(start, 0, true);
+            openList.insertOrUpdate(start, 0, 0);
+
+            long maximum = 0;
+            int polls = 0;
+            while(!openList.isEmpty()){
+                if(context.shouldStop(++polls)) return;
+
+                int current = openList.poll();
+                long cost = context.getCostToReach(current, true);
+                maximum = cost;
+
+                int mask = grid.getNeighbourMask(current);
+                while(mask != 0){
+                    int direction = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+
+                    int neighbour = current + grid.getDirectionOffset(direction);
+                    long costToReach = cost + grid.getStepCost(current, direction);
+                    if(costToReach >= context.getCostToReach(neighbour, true)) continue;
+
+                    context.setCostToReach(neighbour, costToReach, true);
+                    openList.insertOrUpdate(neighbour, costToReach, 0);
+                }
+            }
+
+            //the last polled cell is the farthest one
+            long scale = maximum / (UNREACHABLE - 1) + 1;
+            scales[landmark] = scale;
+
+            int count = cells.length;
+            for(int cell = 0; cell < grid.getWidth() * grid.getHeight(); cell++){
+                long cost = context.getCostToReach(cell, true);
+                int distance = cost == Long.MAX_VALUE ? UNREACHABLE : (int) (cost / scale);
+                distances.putShort((cell * count + landmark) << 1, (short) distance);
+            }
+        } finally {
+            grid.releaseSearchContext(context);
+        }
+    }
+}
@@ -3,30 +3,33 @@ package xyz.GPSforLEGENDS;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * view on a single cell of a NodeGrid
+ * Nodes are created on demand by the grid, all data is read from the grid
+ * the state of a search is not part of the node, it is kept per search in a SearchContext
+ */
 public class Node {
 
-    private boolean traversable;
+    private final NodeGrid grid;
 
-    private int x;
-    private int y;
-    private double[] costToReach = {Double.MAX_VALUE, Double.MAX_VALUE};
+    private final int x;
+    private final int y;
 
-    private Node[] predecessor = new Node[2];
-
-    private long status;
-
-    private List<Node> neighbours;
-
-    public Node(boolean traversable, int x, int y){
-        this.traversable = traversable;
+    Node(NodeGrid grid, int x, int y){
+        this.grid = grid;
         this.x = x;
         this.y = y;
-        //a pixel can be surrounded by a maximum of 8 others
-        neighbours = new ArrayList<>(8);
     }
 
     public boolean isTraversable() {
-        return traversable;
+        return grid.isTraversable(getIndex());
+    }
+
+    /**
+     * @return the terrain cost of the cell, 1 if the grid is not weighted
+     */
+    public int getCost() {
+        return grid.getCost(getIndex());
     }
 
     public int getX() {
@@ -37,70 +40,27 @@ public class Node {
         return y;
     }
 
-    public Node getPredecessor(boolean fromStart){
-        return predecessor[fromStart ? 0 : 1];
-    }
-
-    public void setPredecessor(Node n, boolean fromStart){
-        this.predecessor[fromStart ? 0 : 1] = n;
+    int getIndex() {
+        return grid.index(x, y);
     }
 
-    /**
-     * getter for the status
-     * 0 = not explored
-     * NOT 0 = Thread id of the pathworker that explored the node
-     * @return
-     */
-    public long getStatus() {
-        return status;
+    NodeGrid getGrid() {
+        return grid;
     }
 
     /**
-     * setter for the status
-     * 0 = not explored
-     * NOT 0 = Thread id of the pathworker that explored the node
-     * @return
+     * the neighbours are looked up in the grid every time this method is called
+     * @return a list with all traversable neighbours
      */
-    public void setStatus(long status) {
-        this.status = status;
-    }
-
     public List<Node> getNeighbours() {
-        return this.neighbours;
-    }
-
-    public void setNeighbours(List<Node> neighbours) {
-        this.neighbours = neighbours;
-    }
+        int[] buffer = new int[8];
+        int count = grid.getNeighbours(getIndex(), buffer);
 
-    /**
-     * adds the Node to the neighbour list, BUT only if the node is traversable!!!
-     * @param node
-     */
-    public void addNeighbour(Node node){
-        if(node.isTraversable()) neighbours.add(node);
-    }
-
-    public void removeNeighbour(Node node){
-        neighbours.remove(node);
-    }
-
-    /**
-     * sets the cost to reach either from the start or end node
-     * @param costToReach
-     * @param fromStart
-     */
-    public void setCostToReach(double costToReach, boolean fromStart) {
-        this.costToReach[fromStart ? 0 : 1] = costToReach;
-    }
-
-    /**
-     * gets the cost to reach either from the start or end point
-     * @param fromStart
-     * @return
-     */
-    public double getCostToReach(boolean fromStart) {
-        return costToReach[fromStart ? 0 : 1];
+        List<Node> neighbours = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            neighbours.add(grid.getNode(buffer[i]));
+        }
+        return neighbours;
     }
 
     @Override
@@ -118,4 +78,9 @@ public class Node {
 
         return (n.getX() == x && n.getY() == y);
     }
+
+    @Override
+    public int hashCode(){
+        return 31 * x + y;
+    }
 }
@@ -1,23 +1,83 @@
 package xyz.GPSforLEGENDS;
 
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * grid of cells created from an image
+ * the cells are stored in flat primitive arrays indexed by index = y * width + x
+ * traversability is packed into a bitset and the traversable neighbours of every cell are stored as an 8 bit mask
+ * Node objects are only created on demand, see getNode(int, int)
+ * a weighted grid additionally stores the terrain cost of every cell as an unsigned byte, see TerrainCosts
+ * a grid can be saved into a binary file and opened again with memory mapping, see save(Path) and open(Path)
+ * the grid is not changed by searches, so it can be searched by many threads at the same time.
+ * cells can be opened and blocked with setTraversable, but not while the grid is searched
+ */
 public class NodeGrid {
 
-    // x and y
-    private final Node[][] nodeGrid;
+    // the 8 directions to the neighbours of a cell, bit d of a neighbour mask stands for direction d
+    static final int[] DIRECTION_X = {-1, 0, 1, -1, 1, -1, 0, 1};
+    static final int[] DIRECTION_Y = {-1, -1, -1, 0, 0, 1, 1, 1};
+
+    // bits of the neighbour mask that are diagonal directions
+    static final int DIAGONAL_DIRECTIONS = 0b10100101;
+
+    // costs are fixed point integers, a straight step over cells of cost 1 costs STRAIGHT_COST and a diagonal one DIAGONAL_COST (sqrt 2 * 1000).
+    // both are even, so the average cost of two cells times the step cost is always an integer
+    static final int STRAIGHT_COST = 1000;
+    static final int DIAGONAL_COST = 1414;
+
+    private final int width;
+    private final int height;
+
+    // bit index % 64 of the little endian long index / 64 is set if the cell is traversable
+    // on the heap for grids created from an image, memory mapped for grids opened from a file
+    private final ByteBuffer traversable;
+
+    // bit d is set if the neighbour in direction d exists and is traversable
+    private final ByteBuffer neighbourMasks;
+
+    // terrain cost of every cell as unsigned byte, null if every cell costs 1
+    private final ByteBuffer costs;
+
+    // lowest cost of a traversable cell, keeps the heuristics admissible
+    private final int minimumCost;
+
+    // index offset to the neighbour in direction d
+    private final int[] directionOffsets = new int[8];
+
+    // number of changes the change log holds, a power of 2
+    static final int CHANGE_LOG_SIZE = 4096;
 
-    private AtomicBoolean isSolved = new AtomicBoolean(false);
+    // incremented by every change of the cells, lets caches of search results detect that they are outdated
+    private volatile int version;
+
+    // the cell changed by version v at v & (CHANGE_LOG_SIZE - 1), lets caches update only what the last changes touched
+    private final int[] changeLog = new int[CHANGE_LOG_SIZE];
+
+    // connected components of the traversable cells, built on the first reachability query. null if not built yet or outdated
+    private volatile ComponentIndex components;
+
+    // number of idle search contexts a new grid keeps, every context takes about 44 bytes per cell
+    static final int DEFAULT_SEARCH_CONTEXT_POOL_SIZE = 2;
+
+    // search states that no search is using, an empty slot is null. the grid itself is never written by a search.
+    // replaced as a whole when the size of the pool changes
+    private volatile AtomicReferenceArray<SearchContext> idleSearchContexts = new AtomicReferenceArray<>(DEFAULT_SEARCH_CONTEXT_POOL_SIZE);
 
 
     /**
      * constructor
      * initialize the nodegrid and fills it with the nodes
      * all pixel != white are considered to be not traversable
+     * the pixels are read directly from the raster and the grid is built in parallel on the common fork join pool
      * @param image the image that is used to create the grid from. The dimension has to be atleast 2x2. Not null
      * @exception NullPointerException if the image is null
      */
@@ -25,138 +85,192 @@ public class NodeGrid {
 
         if(image == null) throw new NullPointerException("BufferedImage image cant be null");
 
-        nodeGrid = new Node[image.getWidth()][image.getHeight()];
+        width = image.getWidth();
+        height = image.getHeight();
 
-        //loop to create the nodes
-        for(int row = 0; row < image.getHeight(); row++){
-            for(int column = 0; column < image.getWidth(); column++){
-                //weiß == -1
-                boolean traversable = (image.getRGB(column,row) == -1);
-                Node node = new Node(traversable, column, row);
-                nodeGrid[column][row] = node;
-            }
-        }
+        //weiß == -1
+        traversable = RasterReader.readTraversable(image);
+        neighbourMasks = ByteBuffer.allocate(width * height);
+        costs = null;
+        minimumCost = 1;
 
-        setupNeighbours();
+        computeDirectionOffsets();
+        computeNeighbourMasks();
     }
 
     /**
-     * function to setup the neighbours of all nodes in the grid
+     * constructor of a weighted grid
+     * the terrain costs map the color of every pixel to the cost of its cell, cells with the cost TerrainCosts.WALL are not traversable.
+     * moving between two neighbours costs the length of the step (1 or sqrt 2) times the average cost of both cells,
+     * so a single search finds the cheapest path over all terrains
+     * the pixels are read directly from the raster and the grid is built in parallel on the common fork join pool
+     * @param image the image that is used to create the grid from. The dimension has to be atleast 2x2. Not null
+     * @param terrainCosts the cost of every color, e.g. TerrainCosts.grayscale(). Not null
+     * @exception NullPointerException if the image or the terrain costs are null
+     * @exception IllegalArgumentException if the terrain costs return a cost outside of 0 to TerrainCosts.MAX_COST
      */
-    private void setupNeighbours(){
-        //loop to set neighbours of the nodes
-        //corners are treated outside of the loop
-        for(int row = 0; row < getHeight(); row++){
-            for(int column = 0; column < getWidth(); column++){
+    public NodeGrid(BufferedImage image, TerrainCosts terrainCosts){
 
-                //if top border && NOT corner
-                if(row == 0 && (column != 0 && column < getWidth() - 1)){
-                    Node n = getNode(column, row);
+        if(image == null) throw new NullPointerException("BufferedImage image cant be null");
+        if(terrainCosts == null) throw new NullPointerException("TerrainCosts terrainCosts cant be null");
 
-                    n.addNeighbour(getNode(column - 1, row));
-                    n.addNeighbour(getNode(column + 1, row));
+        width = image.getWidth();
+        height = image.getHeight();
 
-                    n.addNeighbour(getNode(column - 1, row + 1));
-                    n.addNeighbour(getNode(column, row + 1));
-                    n.addNeighbour(getNode(column + 1, row + 1));
-                }
+        costs = RasterReader.readCosts(image, terrainCosts);
+        traversable = RasterReader.readTraversable(costs, width, height);
+        neighbourMasks = ByteBuffer.allocate(width * height);
+        minimumCost = computeMinimumCost(costs, width * height);
 
-                //if bottom border && NOT CORNER
-                else if(row == getHeight() - 1 && (column != 0 && column < getWidth() - 1)){
-                    Node n = getNode(column, row);
+        computeDirectionOffsets();
+        computeNeighbourMasks();
+    }
 
-                    n.addNeighbour(getNode(column - 1, row - 1));
-                    n.addNeighbour(getNode(column, row - 1));
-                    n.addNeighbour(getNode(column + 1, row - 1));
+    /**
+     * constructor for a grid opened from a file
+     */
+    private NodeGrid(int width, int height, ByteBuffer traversable, ByteBuffer neighbourMasks, ByteBuffer costs, int minimumCost){
+        this.width = width;
+        this.height = height;
+        this.traversable = traversable;
+        this.neighbourMasks = neighbourMasks;
+        this.costs = costs;
+        this.minimumCost = minimumCost;
+
+        computeDirectionOffsets();
+    }
 
-                    n.addNeighbour(getNode(column - 1, row));
-                    n.addNeighbour(getNode(column + 1, row));
-                }
+    /**
+     * opens a grid saved with save(Path)
+     * the file is memory mapped and not read, so opening takes the same short time for every grid size.
+     * the pages are loaded by the operating system on first access, are shared with every other process that opens the same file
+     * and do not count towards the heap, so the grid can be larger than the heap.
+     * the file must not be changed while the grid is used
+     * @param file the grid file. Not null
+     * @return the grid
+     * @exception NullPointerException if the file is null
+     * @exception IOException if the file cant be read or is not a grid file
+     */
+    public static NodeGrid open(Path file) throws IOException {
 
-                //if left border && NOT corner
-                else if(column == 0 && (row != 0 && row < getHeight() - 1)){
-                    Node n = getNode(column, row);
+        if(file == null) throw new NullPointerException("Path file cant be null");
 
-                    n.addNeighbour(getNode(column, row - 1));
-                    n.addNeighbour(getNode(column + 1, row - 1));
+        GridFile gridFile = GridFile.open(file);
+        int width = gridFile.getWidth();
+        int height = gridFile.getHeight();
 
-                    n.addNeighbour(getNode(column + 1, row));
+        ByteBuffer traversable = gridFile.getSection(GridFile.SECTION_TRAVERSABLE);
+        ByteBuffer neighbourMasks = gridFile.getSection(GridFile.SECTION_NEIGHBOUR_MASKS);
 
-                    n.addNeighbour(getNode(column, row + 1));
-                    n.addNeighbour(getNode(column + 1, row + 1));
-                }
+        //only weighted grids have costs
+        ByteBuffer costs = gridFile.getSection(GridFile.SECTION_COSTS);
+        ByteBuffer minimumCost = gridFile.getSection(GridFile.SECTION_MINIMUM_COST);
 
-                //if rigth border && NOT corner
-                else if(column == getWidth() - 1 && (row != 0 && row < getHeight() - 1)){
-                    Node n = getNode(column, row);
-                    n.addNeighbour(getNode(column, row - 1));
-                    n.addNeighbour(getNode(column - 1, row - 1));
+        long cells = (long) width * height;
+        if(traversable == null || traversable.capacity() != (cells + 63) / 64 * 8
+                || neighbourMasks == null || neighbourMasks.capacity() != cells
+                || (costs != null && (costs.capacity() != cells || minimumCost == null || minimumCost.capacity() != 4))){
+            throw new IOException("The grid file has missing or invalid sections: " + file);
+        }
+        return new NodeGrid(width, height, traversable, neighbourMasks, costs, costs == null ? 1 : minimumCost.getInt(0));
+    }
 
-                    n.addNeighbour(getNode(column - 1, row));
+    /**
+     * saves the grid into a binary file that can be opened with open(Path)
+     * the file contains the traversability bitset, the neighbour masks and the terrain costs of a weighted grid, an existing file is replaced
+     * @param file the grid file. Not null
+     * @exception NullPointerException if the file is null
+     * @exception IOException if the file cant be written
+     */
+    public void save(Path file) throws IOException {
 
-                    n.addNeighbour(getNode(column, row + 1));
-                    n.addNeighbour(getNode(column - 1, row + 1));
-                }
+        if(file == null) throw new NullPointerException("Path file cant be null");
 
-                //all none border nodes
-                else{
-                    if(column != 0 && row != 0 && column != getWidth() - 1 && row != getHeight() - 1) {
-                        Node n = getNode(column, row);
+        Map<Integer, ByteBuffer> sections = new LinkedHashMap<>();
+        sections.put(GridFile.SECTION_TRAVERSABLE, traversable.duplicate());
+        sections.put(GridFile.SECTION_NEIGHBOUR_MASKS, neighbourMasks.duplicate());
+        if(costs != null){
+            sections.put(GridFile.SECTION_COSTS, costs.duplicate());
+            sections.put(GridFile.SECTION_MINIMUM_COST, ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, minimumCost));
+        }
 
-                        n.addNeighbour(getNode(column - 1, row - 1));
-                        n.addNeighbour(getNode(column, row - 1));
-                        n.addNeighbour(getNode(column + 1, row - 1));
+        GridFile.save(file, width, height, sections);
+    }
 
-                        n.addNeighbour(getNode(column - 1, row));
-                        n.addNeighbour(getNode(column + 1, row));
+    /**
+     * @return the lowest cost of all traversable cells, 1 if there is none
+     */
+    private static int computeMinimumCost(ByteBuffer costs, int cells){
+        return IntStream.range(0, cells).parallel()
+                .map(index -> costs.get(index) & 0xFF)
+                .filter(cost -> cost != TerrainCosts.WALL)
+                .min().orElse(1);
+    }
 
-                        n.addNeighbour(getNode(column - 1, row + 1));
-                        n.addNeighbour(getNode(column, row + 1));
-                        n.addNeighbour(getNode(column + 1, row + 1));
-                    }
-                }
-            }
+    private void computeDirectionOffsets(){
+        for(int d = 0; d < 8; d++){
+            directionOffsets[d] = DIRECTION_Y[d] * width + DIRECTION_X[d];
         }
-        //setting neighbours for the corners
-
-        //top left
-        Node n = getNode(0,0);
-        n.addNeighbour(getNode(1,0));
-        n.addNeighbour(getNode(1,1));
-        n.addNeighbour(getNode(0, 1));
-
-        //top right
-        n = getNode(getWidth() - 1,0);
-        n.addNeighbour(getNode(getWidth() - 2,  0 ));
-        n.addNeighbour(getNode(getWidth() - 2,  1 ));
-        n.addNeighbour(getNode(getWidth() - 1,  1 ));
+    }
 
-        //bottom left
-        n = getNode(0, getHeight() - 1);
-        n.addNeighbour(getNode(0, getHeight() - 2));
-        n.addNeighbour(getNode(1, getHeight() - 2));
-        n.addNeighbour(getNode(1, getHeight() - 1));
+    /**
+     * computes the neighbour masks of all cells, the rows are computed in parallel on the common fork join pool
+     */
+    private void computeNeighbourMasks(){
+        IntStream.range(0, height).parallel().forEach(this::computeNeighbourMasks);
+    }
 
-        //bottom right
-        n = getNode(getWidth() - 1, getHeight() - 1);
-        n.addNeighbour(getNode(getWidth() - 1,getHeight() - 2));
-        n.addNeighbour(getNode(getWidth() - 2,getHeight() - 2));
-        n.addNeighbour(getNode(getWidth() - 2,getHeight() - 1));
+    /**
+     * computes the neighbour masks of all cells of the row
+     * border cells are handled by clearing the directions that leave the grid, so the inner loop has no branches per direction
+     */
+    private void computeNeighbourMasks(int row){
+        //directions that stay inside of the grid for this row
+        int rowMask = 0xFF;
+        if(row == 0) rowMask &= ~0b00000111;
+        if(row == height - 1) rowMask &= ~0b11100000;
+
+        for(int column = 0; column < width; column++){
+            int mask = rowMask;
+            if(column == 0) mask &= ~0b00101001;
+            if(column == width - 1) mask &= ~0b10010100;
+
+            int index = row * width + column;
+            int neighbours = 0;
+            for(int d = 0; d < 8; d++){
+                if((mask >>> d & 1) != 0 && isTraversable(index + directionOffsets[d])) neighbours |= 1 << d;
+            }
+            neighbourMasks.put(index, (byte) neighbours);
+        }
     }
 
     /**
      * returns the node on the grid
+     * the node is created on demand and is only a view on the cell
      * @param x x coordinate
      * @param y y coordinate
      * @return the Node with the corresponding position on the grid, null if the coordinates are outside of the grid
      */
     public Node getNode(int x, int y){
 
-        if(x < 0 || x > nodeGrid.length || y < 0 || y > nodeGrid[0].length){
+        if(!contains(x, y)){
             return null;
         }
 
-        return nodeGrid[x][y];
+        return new Node(this, x, y);
+    }
+
+    Node getNode(int index){
+        return new Node(this, getX(index), getY(index));
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return true if the coordinates are inside of the grid
+     */
+    public boolean contains(int x, int y){
+        return x >= 0 && x < width && y >= 0 && y < height;
     }
 
     /**
@@ -164,39 +278,278 @@ public class NodeGrid {
      * @return the width of the nodegrid
      */
     public int getWidth(){
-        return nodeGrid.length;
+        return width;
     }
 
     /**
      * @return the length of the nodegrid
      */
     public int getHeight(){
-        return nodeGrid[0].length;
+        return height;
+    }
+
+    int index(int x, int y){
+        return y * width + x;
+    }
+
+    int getX(int index){
+        return index % width;
+    }
+
+    int getY(int index){
+        return index / width;
+    }
+
+    boolean isTraversable(int index){
+        return (traversable.getLong((index >>> 6) << 3) & 1L << index) != 0;
     }
 
     /**
-     * resets the nodegrid to its original state
+     * opens or blocks the cell and updates the neighbour masks of the cell and its neighbours.
+     * searches that run at the same time can see the grid half updated, so the caller has to make sure that no search runs.
+     * search results that depend on the cell, e.g. a PathCache or a HierarchicalGraph, are outdated afterwards
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param traversable the new traversability of the cell
+     * @exception IllegalArgumentException if the coordinates are outside of the grid, or the cell is opened but is a wall of the terrain costs
+     * @exception UnsupportedOperationException if the grid was opened from a file, the file is mapped read only
      */
-    public void reset(){
-        for(int row = 0; row < getHeight(); row++){
-            for(int column = 0; column < getWidth(); column++){
-                Node node = getNode(column,row);
-                node.setStatus(0);
-                node.setCostToReach(Double.MAX_VALUE, true);
-                node.setCostToReach(Double.MAX_VALUE, false);
-                node.setPredecessor(null, true);
-                node.setPredecessor(null, false);
-                isSolved.set(false);
+    public synchronized void setTraversable(int x, int y, boolean traversable){
+        if(!contains(x, y)) throw new IllegalArgumentException("The coordinates are outside of the grid");
+        if(this.traversable.isReadOnly()) throw new UnsupportedOperationException("A grid opened from a file cant be changed");
+
+        int index = index(x, y);
+        if(isTraversable(index) == traversable) return;
+
+        //a wall of a weighted grid has no cost that a step over it could use
+        if(traversable && getCost(index) == TerrainCosts.WALL){
+            throw new IllegalArgumentException("The cell is a wall of the terrain costs and cant be opened");
+        }
+
+        int word = (index >>> 6) << 3;
+        long bits = this.traversable.getLong(word);
+        this.traversable.putLong(word, traversable ? bits | 1L << index : bits & ~(1L << index));
+
+        //the neighbour in direction d sees the cell in the opposite direction 7 - d
+        for(int d = 0; d < 8; d++){
+            if(!contains(x + DIRECTION_X[d], y + DIRECTION_Y[d])) continue;
+
+            int neighbour = index + directionOffsets[d];
+            int mask = neighbourMasks.get(neighbour);
+            mask = traversable ? mask | 1 << (7 - d) : mask & ~(1 << (7 - d));
+            neighbourMasks.put(neighbour, (byte) mask);
+        }
+
+        //an opened cell only merges components, a blocked one can split its component and then the index is built again on the next query
+        ComponentIndex componentIndex = components;
+        if(componentIndex != null && !(traversable ? componentIndex.cellOpened(index) : componentIndex.cellBlocked(index))) components = null;
+
+        //written before the version, a reader that sees the version sees the cell
+        changeLog[(version + 1) & (CHANGE_LOG_SIZE - 1)] = index;
+        version++;
+    }
+
+    /**
+     * answers in constant time if a path between the cells exists, without a search.
+     * the connected components of the grid are computed in parallel on the first call and kept up to date by setTraversable
+     * @return true if both cells are traversable and connected
+     * @exception IllegalArgumentException if the coordinates are outside of the grid
+     */
+    public boolean isReachable(int startX, int startY, int endX, int endY){
+        if(!contains(startX, startY) || !contains(endX, endY)) throw new IllegalArgumentException("The start or end coordinates are outside of the grid");
+
+        int start = index(startX, startY);
+        int end = index(endX, endY);
+        return isTraversable(start) && isTraversable(end) && isConnected(start, end);
+    }
+
+    /**
+     * @return true if both traversable cells are in the same connected component
+     */
+    boolean isConnected(int start, int end){
+        ComponentIndex index = components;
+        if(index == null){
+            synchronized(this){
+                index = components;
+                if(index == null){
+                    index = new ComponentIndex(this);
+                    components = index;
+                }
             }
         }
+        return index.isConnected(start, end);
+    }
+
+    /**
+     * @return a number that changes whenever the traversability or the costs of the cells change
+     */
+    int getVersion(){
+        return version;
+    }
+
+    /**
+     * @param since a version returned by getVersion
+     * @param until a version returned by getVersion after since
+     * @return the cells changed after since up to until, a cell that changed more than once is contained more than once.
+     * null if more than CHANGE_LOG_SIZE changes happened after since, the log does not reach back that far anymore
+     */
+    synchronized int[] getChangedCells(int since, int until){
+        //the differences are compared since the version can overflow
+        if(version - since > CHANGE_LOG_SIZE || until - since < 0) return null;
+
+        int[] cells = new int[until - since];
+        for(int i = 0; i < cells.length; i++){
+            cells[i] = changeLog[(since + 1 + i) & (CHANGE_LOG_SIZE - 1)];
+        }
+        return cells;
+    }
+
+    /**
+     * @return true if the grid was created with terrain costs
+     */
+    public boolean isWeighted(){
+        return costs != null;
+    }
+
+    /**
+     * @return the terrain cost of the cell, 1 for every cell of a grid without terrain costs
+     */
+    int getCost(int index){
+        return costs == null ? 1 : costs.get(index) & 0xFF;
+    }
+
+    /**
+     * @return the lowest cost of a traversable cell, the heuristics are multiplied with it to stay admissible
+     */
+    int getMinimumCost(){
+        return minimumCost;
+    }
+
+    /**
+     * @return the fixed point cost to move from the cell to its neighbour in the direction
+     */
+    int getStepCost(int index, int direction){
+        int length = (DIAGONAL_DIRECTIONS >>> direction & 1) != 0 ? DIAGONAL_COST : STRAIGHT_COST;
+        if(costs == null) return length;
+
+        return length / 2 * ((costs.get(index) & 0xFF) + (costs.get(index + directionOffsets[direction]) & 0xFF));
     }
 
-    public boolean isSolved(){
-        return this.isSolved.get();
+    /**
+     * @param from the cell
+     * @param to a neighbour of the cell
+     * @return the fixed point cost to move from the cell to its neighbour
+     */
+    int getMoveCost(int from, int to){
+        int length = getX(from) != getX(to) && getY(from) != getY(to) ? DIAGONAL_COST : STRAIGHT_COST;
+        if(costs == null) return length;
+
+        return length / 2 * ((costs.get(from) & 0xFF) + (costs.get(to) & 0xFF));
     }
 
-    boolean getAndSetSolved(boolean solved){
-        return this.isSolved.getAndSet(solved);
+    /**
+     * octile distance, the exact fixed point cost between two cells of a grid without walls where every cell costs 1
+     * @param dx difference of the x coordinates
+     * @param dy difference of the y coordinates
+     */
+    static long octileDistance(int dx, int dy){
+        dx = Math.abs(dx);
+        dy = Math.abs(dy);
+
+        return (long) STRAIGHT_COST * Math.max(dx, dy) + (long) (DIAGONAL_COST - STRAIGHT_COST) * Math.min(dx, dy);
+    }
+
+    /**
+     * admissible and consistent heuristic: the octile distance times the lowest cost of a cell
+     * @return the estimated fixed point cost from the cell to x, y
+     */
+    long estimateCost(int index, int x, int y){
+        return octileDistance(getX(index) - x, getY(index) - y) * minimumCost;
+    }
+
+    /**
+     * @return bit d is set if the neighbour in direction d exists and is traversable
+     * @see #DIRECTION_X
+     */
+    int getNeighbourMask(int index){
+        return neighbourMasks.get(index) & 0xFF;
+    }
+
+    /**
+     * @return the index offset to the neighbour in direction d
+     */
+    int getDirectionOffset(int direction){
+        return directionOffsets[direction];
+    }
+
+    /**
+     * writes the indices of all traversable neighbours of the cell into the buffer
+     * @param index the cell
+     * @param buffer array with a length of atleast 8
+     * @return the number of neighbours written into the buffer
+     */
+    int getNeighbours(int index, int[] buffer){
+        int mask = neighbourMasks.get(index) & 0xFF;
+        int count = 0;
+
+        while(mask != 0){
+            int direction = Integer.numberOfTrailingZeros(mask);
+            buffer[count++] = index + directionOffsets[direction];
+            mask &= mask - 1;
+        }
+        return count;
+    }
+
+    /**
+     * borrows a search context from the pool of the grid, a new one is created if all of them are in use.
+     * it has to be returned with releaseSearchContext when the search and everything that reads its state is finished.
+     * the pool keeps a few idle contexts, see setSearchContextPoolSize, so short lived threads (virtual threads) and pool threads share them
+     * instead of keeping one of about 44 bytes per cell each. contexts of a burst of searches beyond the pool size are garbage collected
+     * @return a context that only the caller uses until it is released, it still contains the state of its last search
+     */
+    SearchContext acquireSearchContext(){
+        AtomicReferenceArray<SearchContext> pool = idleSearchContexts;
+        for(int slot = 0; slot < pool.length(); slot++){
+            SearchContext context = pool.get(slot);
+            if(context != null && pool.compareAndSet(slot, context, null)) return context;
+        }
+        return new SearchContext(getWidth() * getHeight());
+    }
+
+    /**
+     * returns the context into the pool, it is dropped if the pool is full
+     * @param context borrowed with acquireSearchContext and not used anymore
+     */
+    void releaseSearchContext(SearchContext context){
+        AtomicReferenceArray<SearchContext> pool = idleSearchContexts;
+        for(int slot = 0; slot < pool.length(); slot++){
+            if(pool.get(slot) == null && pool.compareAndSet(slot, null, context)) return;
+        }
+    }
+
+    /**
+     * sets the number of idle search contexts the grid keeps for following searches, the default is 2.
+     * a context takes about 44 bytes per cell, so large grids that are searched by many threads at once can keep fewer,
+     * and 0 frees every context after its search. the idle contexts are dropped
+     * @param size atleast 0
+     * @exception IllegalArgumentException if size is negative
+     */
+    public void setSearchContextPoolSize(int size){
+        if(size < 0) throw new IllegalArgumentException("The pool size cant be negative");
+
+        idleSearchContexts = new AtomicReferenceArray<>(size);
+    }
+
+    public int getSearchContextPoolSize(){
+        return idleSearchContexts.length();
+    }
+
+    /**
+     * the search state is kept per search and not in the grid, so the grid does not have to be reset between searches anymore.
+     * drops the idle search contexts of the pool, so their memory can be freed while the grid is not searched
+     */
+    public void reset(){
+        idleSearchContexts = new AtomicReferenceArray<>(idleSearchContexts.length());
     }
 
 }
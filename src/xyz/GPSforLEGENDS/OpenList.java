@@ -0,0 +1,56 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * open list of a pathworker
+ * contains the indices of the cells that still have to be explored, ordered by their priority (lowest first)
+ * every cell can be in the list only once
+ */
+interface OpenList {
+
+    /**
+     * inserts the cell, or changes its priority if the cell is already in the list
+     * cells with the same priority are returned with the lowest heuristic first, so the search prefers cells closer to its goal
+     * @param cell index of the cell
+     * @param priority estimated cost of a path over the cell in fixed point units, see NodeGrid.STRAIGHT_COST
+     * @param heuristic estimated cost from the cell to the goal, only breaks ties
+     */
+    void insertOrUpdate(int cell, long priority, long heuristic);
+
+    /**
+     * removes the cell with the lowest priority
+     * @return index of the removed cell
+     * @exception java.util.NoSuchElementException if the list is empty
+     */
+    int poll();
+
+    boolean contains(int cell);
+
+    boolean isEmpty();
+
+    int size();
+
+    /**
+     * removes all cells from the list and sets the counters below to 0
+     */
+    void clear();
+
+    /**
+     * @return the number of cells inserted since the last clear
+     */
+    long getPushes();
+
+    /**
+     * @return the number of cells polled since the last clear
+     */
+    long getPops();
+
+    /**
+     * @return the number of priority changes of cells that already were in the list since the last clear
+     */
+    long getDecreaseKeys();
+
+    /**
+     * @return the largest size of the list since the last clear
+     */
+    int getPeakSize();
+}
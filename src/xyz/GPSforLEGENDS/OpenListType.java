@@ -0,0 +1,59 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * the available implementations of the open list used by the pathworkers
+ */
+public enum OpenListType {
+
+    /**
+     * indexed 4-ary heap with decrease-key, breaks ties of the priority by the lower heuristic
+     */
+    DARY_HEAP(true) {
+        @Override
+        OpenList create(int cells) {
+            return new IndexedDaryHeap(cells, 4);
+        }
+    },
+
+    /**
+     * exact bucket queue with one bucket per cost unit, kept in a ring that spans the priorities currently in the queue.
+     * finds the same path costs as the heap, see BucketQueue
+     */
+    BUCKET_QUEUE(true) {
+        @Override
+        OpenList create(int cells) {
+            return new BucketQueue(cells);
+        }
+    },
+
+    /**
+     * bucket queue with one bucket per 64 cost units, skips fewer empty buckets on weighted grids than BUCKET_QUEUE.
+     * cells within a bucket are returned in last in first out order, so the path is not always the shortest one.
+     * searches with this open list are not stored in a PathCache
+     */
+    COARSE_BUCKET_QUEUE(false) {
+        @Override
+        OpenList create(int cells) {
+            return new BucketQueue(cells, BucketQueue.COARSE_SHIFT);
+        }
+    };
+
+    private final boolean exact;
+
+    OpenListType(boolean exact){
+        this.exact = exact;
+    }
+
+    /**
+     * @return true if the cells are polled in the order of their priorities, only then the searches find the shortest path
+     */
+    public boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * @param cells number of cells of the grid
+     * @return a new, empty open list
+     */
+    abstract OpenList create(int cells);
+}
@@ -0,0 +1,228 @@
+package xyz.GPSforLEGENDS;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * reusable buffer for a path as packed cell indices (index = y * width + x), filled by AStar.findPath without creating Node objects.
+ * the array only grows, so a buffer that is reused for all queries of a thread makes the path extraction allocation free.
+ * the path can be written as run length encoded directions, one byte per run of up to 32 steps into the same direction,
+ * which is far smaller than the cells for serialization over the wire.
+ * a buffer is not thread safe, every thread needs its own
+ * @see AStar#findPath(int, int, int, int, PathBuffer)
+ */
+public class PathBuffer {
+
+    // the longest run of one byte of the encoded directions
+    private static final int MAX_RUN = 32;
+
+    // direction of NodeGrid.DIRECTION_X and NodeGrid.DIRECTION_Y by (dy + 1) * 3 + dx + 1, -1 for no step
+    private static final int[] DIRECTIONS = {0, 1, 2, 3, -1, 4, 5, 6, 7};
+
+    private int[] cells;
+
+    private int length;
+
+    // the grid of the cells, null if the buffer was never filled
+    private NodeGrid grid;
+
+    /**
+     * Constructor of a buffer for paths of up to 256 nodes, it grows for longer paths
+     */
+    public PathBuffer(){
+        this(256);
+    }
+
+    /**
+     * Constructor
+     * @param capacity the number of nodes the buffer holds before it grows
+     * @exception IllegalArgumentException if the capacity is negative
+     */
+    public PathBuffer(int capacity){
+        if(capacity < 0) throw new IllegalArgumentException("The capacity cant be negative");
+
+        this.cells = new int[capacity];
+    }
+
+    /**
+     * @return the number of nodes of the path, 0 if no path was found
+     */
+    public int length(){
+        return length;
+    }
+
+    public boolean isEmpty(){
+        return length == 0;
+    }
+
+    /**
+     * @return the cell index of the node of the path, see NodeGrid.getNode(int)
+     * @exception IndexOutOfBoundsException if the node is not part of the path
+     */
+    public int getCell(int node){
+        if(node < 0 || node >= length) throw new IndexOutOfBoundsException("The path has " + length + " nodes, not " + node);
+
+        return cells[node];
+    }
+
+    public int getX(int node){
+        return grid.getX(getCell(node));
+    }
+
+    public int getY(int node){
+        return grid.getY(getCell(node));
+    }
+
+    /**
+     * @return the array of the buffer without a copy, only the first length() cells belong to the path.
+     * it is overwritten by the next search into this buffer
+     */
+    public int[] getCells(){
+        return cells;
+    }
+
+    /**
+     * @return a copy of the cells of the path
+     */
+    public int[] toArray(){
+        return Arrays.copyOf(cells, length);
+    }
+
+    /**
+     * @return the nodes of the path ordered from start to end, empty if no path was found
+     */
+    public List<Node> toNodes(){
+        List<Node> path = new ArrayList<>(length);
+        for(int node = 0; node < length; node++){
+            path.add(grid.getNode(cells[node]));
+        }
+        return path;
+    }
+
+    /**
+     * @return the number of bytes encodeDirections writes
+     */
+    public int getEncodedLength(){
+        int bytes = 0;
+        int run = 0;
+        int previous = -1;
+        for(int node = 1; node < length; node++){
+            int direction = getDirection(node);
+            if(direction != previous || run == MAX_RUN){
+                bytes++;
+                run = 0;
+                previous = direction;
+            }
+            run++;
+        }
+        return bytes;
+    }
+
+    /**
+     * writes the steps of the path as run length encoded directions at the position of the target.
+     * every byte is a run: the direction in the upper 3 bits, see NodeGrid.DIRECTION_X, and the number of steps - 1 in the lower 5 bits.
+     * the start is not written, decodeDirections needs it to read the path
+     * @param target not null
+     * @return the number of written bytes
+     * @exception BufferOverflowException if the target has less than getEncodedLength() bytes remaining, nothing is written then
+     */
+    public int encodeDirections(ByteBuffer target){
+        if(target == null) throw new NullPointerException("ByteBuffer target cant be null");
+
+        int bytes = getEncodedLength();
+        if(target.remaining() < bytes) throw new BufferOverflowException();
+
+        int run = 0;
+        int previous = -1;
+        for(int node = 1; node < length; node++){
+            int direction = getDirection(node);
+            if(direction != previous || run == MAX_RUN){
+                if(run > 0) target.put((byte) (previous << 5 | run - 1));
+                run = 0;
+                previous = direction;
+            }
+            run++;
+        }
+        if(run > 0) target.put((byte) (previous << 5 | run - 1));
+        return bytes;
+    }
+
+    /**
+     * replaces the path of the buffer with the path of the encoded directions, read from the position to the limit of the source
+     * @param grid the grid of the path, not null
+     * @param startX x coordinate of the start of the path
+     * @param startY y coordinate of the start of the path
+     * @param source directions written by encodeDirections, not null
+     * @exception IllegalArgumentException if the start or a step of the path is outside of the grid
+     */
+    public void decodeDirections(NodeGrid grid, int startX, int startY, ByteBuffer source){
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(source == null) throw new NullPointerException("ByteBuffer source cant be null");
+        if(!grid.contains(startX, startY)) throw new IllegalArgumentException("The start coordinates are outside of the grid");
+
+        clear(grid);
+        add(grid.index(startX, startY));
+
+        int x = startX;
+        int y = startY;
+        while(source.hasRemaining()){
+            int run = source.get() & 0xFF;
+            int direction = run >>> 5;
+
+            for(int step = 0; step <= (run & (MAX_RUN - 1)); step++){
+                x += NodeGrid.DIRECTION_X[direction];
+                y += NodeGrid.DIRECTION_Y[direction];
+                if(!grid.contains(x, y)) throw new IllegalArgumentException("The path leaves the grid at " + x + ", " + y);
+
+                add(grid.index(x, y));
+            }
+        }
+    }
+
+    /**
+     * empties the buffer for a path on the grid
+     */
+    void clear(NodeGrid grid){
+        this.grid = grid;
+        this.length = 0;
+    }
+
+    /**
+     * sets the length of the path, the cells are written with set afterwards
+     */
+    void setLength(int length){
+        if(length > cells.length) cells = new int[Math.max(length, cells.length + (cells.length >> 1))];
+
+        this.length = length;
+    }
+
+    void set(int node, int cell){
+        cells[node] = cell;
+    }
+
+    /**
+     * replaces the path with a copy of the cells
+     */
+    void copyFrom(int[] path){
+        setLength(path.length);
+        System.arraycopy(path, 0, cells, 0, path.length);
+    }
+
+    void add(int cell){
+        if(length == cells.length) cells = Arrays.copyOf(cells, Math.max(16, length + (length >> 1)));
+
+        cells[length++] = cell;
+    }
+
+    /**
+     * @return the direction of the step from the previous node to the node
+     */
+    private int getDirection(int node){
+        int dx = grid.getX(cells[node]) - grid.getX(cells[node - 1]);
+        int dy = grid.getY(cells[node]) - grid.getY(cells[node - 1]);
+        return DIRECTIONS[(dy + 1) * 3 + dx + 1];
+    }
+}
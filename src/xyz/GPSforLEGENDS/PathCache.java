@@ -0,0 +1,204 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * least recently used cache of paths on one grid, used by AStar.findPath if it is set with AStar.setPathCache
+ * every subpath of a shortest path is a shortest path itself, so a query whose start and end both lie on a cached path
+ * is answered with the part of that path between them, in either direction since the costs are symmetric.
+ * the size of the cache is the total number of cells of all cached paths, the least recently used paths are removed first.
+ * all entries are removed when the grid changes.
+ * the cache can be used by many threads and AStar instances of the same grid at the same time
+ */
+public class PathCache {
+
+    private final NodeGrid grid;
+
+    private final int maxCells;
+
+    // cached paths by start << 32 | end, in access order
+    private final LinkedHashMap<Long, int[]> paths = new LinkedHashMap<>(16, 0.75f, true);
+
+    // keys of all cached paths that contain the cell
+    private final Map<Integer, List<Long>> pathsOfCell = new HashMap<>();
+
+    private int cells;
+
+    // version of the grid the cached paths were found on
+    private int gridVersion;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong subpathHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param grid the grid of the cached paths, not null
+     * @param maxCells the maximum total number of cells of all cached paths, atleast 1
+     * @exception IllegalArgumentException if maxCells is lower than 1
+     */
+    public PathCache(NodeGrid grid, int maxCells){
+        if(grid == null) throw new NullPointerException("NodeGrid grid cant be null");
+        if(maxCells < 1) throw new IllegalArgumentException("The cache has to hold atleast one cell");
+
+        this.grid = grid;
+        this.maxCells = maxCells;
+        this.gridVersion = grid.getVersion();
+    }
+
+    public NodeGrid getGrid(){
+        return grid;
+    }
+
+    /**
+     * @return the cells of the cached path or subpath from start to end, null if there is none
+     */
+    synchronized int[] get(int start, int end){
+        checkGridVersion();
+
+        int[] path = paths.get(key(start, end));
+        if(path != null){
+            hits.incrementAndGet();
+            return path;
+        }
+
+        path = findSubpath(start, end);
+        if(path != null){
+            subpathHits.incrementAndGet();
+            return path;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * caches the path, removes the least recently used paths if the cache is full
+     * @param path the cells of a shortest path
+     */
+    synchronized void put(int[] path){
+        checkGridVersion();
+
+        if(path.length > maxCells) return;
+
+        long key = key(path[0], path[path.length - 1]);
+        if(paths.containsKey(key)) return;
+
+        paths.put(key, path);
+        cells += path.length;
+        for(int cell : path){
+            pathsOfCell.computeIfAbsent(cell, c -> new ArrayList<>(1)).add(key);
+        }
+
+        Iterator<Map.Entry<Long, int[]>> eldest = paths.entrySet().iterator();
+        while(cells > maxCells){
+            Map.Entry<Long, int[]> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * removes all cached paths, the counters are kept
+     */
+    public synchronized void clear(){
+        paths.clear();
+        pathsOfCell.clear();
+        cells = 0;
+    }
+
+    /**
+     * @return the number of queries answered with a cached path with the same start and end
+     */
+    public long getHits(){
+        return hits.get();
+    }
+
+    /**
+     * @return the number of queries answered with a part of a cached path
+     */
+    public long getSubpathHits(){
+        return subpathHits.get();
+    }
+
+    /**
+     * @return the number of queries that had to be searched
+     */
+    public long getMisses(){
+        return misses.get();
+    }
+
+    /**
+     * @return the number of cached paths
+     */
+    public synchronized int size(){
+        return paths.size();
+    }
+
+    /**
+     * @return the total number of cells of all cached paths
+     */
+    public synchronized int getCells(){
+        return cells;
+    }
+
+    /**
+     * @return the part of a cached path from start to end, null if no cached path contains both
+     */
+    private int[] findSubpath(int start, int end){
+        List<Long> startPaths = pathsOfCell.get(start);
+        List<Long> endPaths = pathsOfCell.get(end);
+        if(startPaths == null || endPaths == null) return null;
+
+        for(long key : startPaths){
+            if(!endPaths.contains(key)) continue;
+
+            //marks the path as recently used
+            int[] path = paths.get(key);
+            int from = indexOf(path, start);
+            int to = indexOf(path, end);
+
+            int[] subpath = new int[Math.abs(to - from) + 1];
+            int step = from <= to ? 1 : -1;
+            for(int i = 0; i < subpath.length; i++){
+                subpath[i] = path[from + i * step];
+            }
+            return subpath;
+        }
+        return null;
+    }
+
+    private void unindex(long key, int[] path){
+        cells -= path.length;
+        for(int cell : path){
+            List<Long> keys = pathsOfCell.get(cell);
+            keys.remove(key);
+            if(keys.isEmpty()) pathsOfCell.remove(cell);
+        }
+    }
+
+    private void checkGridVersion(){
+        int version = grid.getVersion();
+        if(version != gridVersion){
+            clear();
+            gridVersion = version;
+        }
+    }
+
+    private static int indexOf(int[] path, int cell){
+        for(int i = 0; i < path.length; i++){
+            if(path[i] == cell) return i;
+        }
+        return -1;
+    }
+
+    private static long key(int start, int end){
+        return (long) start << 32 | (end & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,41 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * start and end coordinates of a single query of a batch
+ * @see AStar#findPaths(java.util.List)
+ */
+public class PathQuery {
+
+    private final int startX;
+    private final int startY;
+    private final int endX;
+    private final int endY;
+
+    public PathQuery(int startX, int startY, int endX, int endY){
+        this.startX = startX;
+        this.startY = startY;
+        this.endX = endX;
+        this.endY = endY;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getEndX() {
+        return endX;
+    }
+
+    public int getEndY() {
+        return endY;
+    }
+
+    @Override
+    public String toString(){
+        return "(" + startX + "," + startY + ") -> (" + endX + "," + endY + ")";
+    }
+}
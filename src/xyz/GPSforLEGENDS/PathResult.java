@@ -0,0 +1,74 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.List;
+
+/**
+ * result of a single query of a batch or of an asynchronous search
+ * @see AStar#findPaths(java.util.List)
+ * @see AStar#findPathAsync(PathQuery, long, java.util.concurrent.TimeUnit)
+ */
+public class PathResult {
+
+    public enum Status {
+        /**
+         * a path was found
+         */
+        FOUND,
+        /**
+         * start and end are valid, but there is no path between them
+         */
+        UNREACHABLE,
+        /**
+         * the start or end coordinates are outside of the grid or not traversable
+         */
+        INVALID_COORDINATES,
+        /**
+         * the search was stopped by the deadline of the query before it found the shortest path.
+         * the partial path leads from the start to the explored node closest to the end, or is the best path found so far
+         */
+        TIMED_OUT
+    }
+
+    private final PathQuery query;
+
+    private final Status status;
+
+    private final List<Node> path;
+
+    private final SearchStats stats;
+
+    PathResult(PathQuery query, Status status, List<Node> path){
+        this(query, status, path, null);
+    }
+
+    PathResult(PathQuery query, Status status, List<Node> path, SearchStats stats){
+        this.query = query;
+        this.status = status;
+        this.path = path;
+        this.stats = stats;
+    }
+
+    public PathQuery getQuery() {
+        return query;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the nodes ordered from start to end, null if the status is not FOUND.
+     * for TIMED_OUT the partial path ordered from the start, null if the deadline passed before the search started
+     * or the algorithm found no path yet and does not track its frontier (JUMP_POINT_SEARCH, HIERARCHICAL and HASH_DISTRIBUTED)
+     */
+    public List<Node> getPath() {
+        return path;
+    }
+
+    /**
+     * @return the statistics of the search, null if there was none because the coordinates are invalid or the deadline passed before it started
+     */
+    public SearchStats getStats() {
+        return stats;
+    }
+}
@@ -1,221 +1,200 @@
 package xyz.GPSforLEGENDS;
 
-import java.util.*;
 import java.util.concurrent.Callable;
 
 class PathWorker implements Callable<Void> {
 
     private NodeGrid grid;
 
-    private Node startNode, endNode;
+    //state of the search, shared with the other pathworker in parallel mode
+    private SearchContext context;
+
+    //cell indices
+    private int startIndex, endIndex;
+
+    private int startX, startY, endX, endY;
 
     //sorted by the estimated lowest cost.
-    //for more infos look at inner class SortByDistance
-    private PriorityQueue<Node> openList;
+    //priority = current cost to reach the cell + heuristic cost to reach the end
+    private OpenList openList;
 
-    //the unique thread id
-    private long id;
+    //the unique id of the pathworker, 1 = from start, 2 = from end
+    private int id;
+
+    //the id of the pathworker of the other direction
+    private int otherId;
 
     private boolean fromStart;
 
+    //landmarks of the ALT heuristic and the distances of the end to them, null for the octile heuristic
+    private Landmarks landmarks;
+    private int[] endDistances;
+
+    //work of the search for its SearchStats
+    private long expanded, generated;
 
-    /**
-     * Constructor
-     *
-     * @param grid   the nodegrid to run the search on
-     * @param startX
-     * @param startY
-     * @param endX
-     * @param endY
-     */
-    PathWorker(NodeGrid grid, int startX, int startY, int endX, int endY, boolean fromStart) {
-        this(grid, grid.getNode(startX, startY), grid.getNode(endX, endY), fromStart);
-    }
 
     /**
      * COnstructor
      *
      * @param grid
-     * @param start
-     * @param end
+     * @param context the state of the search, has to be reset before the search
+     * @param start index of the start cell
+     * @param end index of the end cell
+     * @param openListType the implementation of the open list
      */
-    PathWorker(NodeGrid grid, Node start, Node end, boolean fromStart) {
+    PathWorker(NodeGrid grid, SearchContext context, int start, int end, boolean fromStart, OpenListType openListType) {
         this.grid = grid;
-        this.startNode = start;
-        this.endNode = end;
-        openList = new PriorityQueue<>(new SortByDistance());
+        this.context = context;
+        this.startIndex = start;
+        this.endIndex = end;
+        this.startX = grid.getX(start);
+        this.startY = grid.getY(start);
+        this.endX = grid.getX(end);
+        this.endY = grid.getY(end);
+        openList = context.getOpenList(fromStart, openListType);
         this.fromStart = fromStart;
+        this.id = fromStart ? 1 : 2;
+        this.otherId = fromStart ? 2 : 1;
     }
 
     /**
-     * function that runs the AStar Pathfinding algorithm.
-     * Stops when either the end node is found OR if the pathfinder finds a node that is already closed by the other pathfinder (only if parallel is true in AStar)
+     * Constructor of a single directional search with the ALT heuristic.
+     * the landmark distances are rounded, so the heuristic is only admissible and not consistent. cells are reopened
+     * when a cheaper way to them is found, which keeps the path the shortest one, but the bidirectional search cant use it
+     *
+     * @param landmarks landmarks of the grid that are not outdated
      */
-    private void aStarPathfinding() {
-        startNode.setCostToReach(0, fromStart);
-        openList.add(startNode);
-
-        do {
-            if(grid.isSolved()){
-                return;
-            }
-            Node currentNode = openList.poll();
-                if (currentNode.equals(endNode)) {
-                    if(!grid.getAndSetSolved(true)) {
-                        synchronized (grid) {
-                            setupPredecessors(currentNode);
-                            currentNode.setStatus(id);
-                        }
-                    }
-                    return;
-                }
-                //found a node that has been marked by another pathworker
-                if(currentNode.getStatus() != 0 && currentNode.getStatus() != id){
-                        if(!grid.getAndSetSolved(true)) {
-                            //findAndRepairPredecessors(currentNode);
-                            synchronized (grid) {
-                                setupPredecessors(currentNode);
-                            }
-                        }
-                        return;
-                }
-
-                //setting the status
-                currentNode.setStatus(id);
-
-            //explore neighbours
-            expandNode(currentNode);
-
-        } while (!openList.isEmpty());
-        noPathFound();
-        return;
+    PathWorker(NodeGrid grid, SearchContext context, int start, int end, OpenListType openListType, Landmarks landmarks) {
+        this(grid, context, start, end, true, openListType);
+        this.landmarks = landmarks;
+        this.endDistances = landmarks.getDistances(end);
     }
 
     /**
-     * expands the node and returns true if the other pathfinder was found during the expandation
-     *
-     * @param currentNode
-     * @return
+     * function that runs the AStar Pathfinding algorithm.
+     * in parallel mode both pathworkers run the bidirectional search NBA* (Pijls and Post 2009) on the shared search context:
+     * every cell that is reached by both directions offers a path to the context, which keeps the cheapest one as best path.
+     * a polled cell is not expanded (rejected) if no path over it can be cheaper than the best path, measured by its own priority
+     * or by its cost to reach plus the lowest priority of the other direction minus its heuristic of the other direction.
+     * the search is finished as soon as one direction polls a cell whose priority is not lower than the cost of the best path
+     * or runs out of cells, then the best path is the shortest one.
+     * without a second pathworker this is a plain AStar search that stops at the end node.
+     * a search with a deadline stops early, the pathworker from the start then leaves the polled cell with the lowest heuristic
+     * as frontier in the context
      */
-    private void expandNode(Node currentNode) {
-        for (Node neighbour : currentNode.getNeighbours()) {
-            synchronized (neighbour) {
-                if(!grid.isSolved()) {
-                    //this node was already worked on
-                    if (neighbour.getStatus() == id) continue;
+    private void aStarPathfinding() {
+        context.setCostToReach(startIndex, 0, fromStart);
+        long startHeuristic = estimateCost(startIndex);
+        openList.insertOrUpdate(startIndex, startHeuristic, startHeuristic);
 
-                    double costToReach = currentNode.getCostToReach(fromStart) + calculateCostToReach(currentNode, neighbour);
+        int polls = 0;
+        int frontier = startIndex;
+        long frontierHeuristic = startHeuristic;
 
-                    if (openList.contains(neighbour) && costToReach >= neighbour.getCostToReach(fromStart)) continue;
+        while (!openList.isEmpty() && !context.isSolved()) {
+            if (context.shouldStop(++polls)) break;
 
-                    neighbour.setCostToReach(costToReach, fromStart);
-                    neighbour.setPredecessor(currentNode, fromStart);
+            int currentNode = openList.poll();
+            long costToReach = context.getCostToReach(currentNode, fromStart);
+            long heuristic = estimateCost(currentNode);
+            long priority = costToReach + heuristic;
 
-                    //remove and add since the order might have changed
-                    openList.remove(neighbour);
-                    openList.add(neighbour);
-                }
+            if (heuristic < frontierHeuristic) {
+                frontier = currentNode;
+                frontierHeuristic = heuristic;
             }
-        }
-    }
 
-    /**
-     * sets the predecessors of neighbour to currentnode and reverses the predecessor order of all predecessors of neighbour
-     * but only if the predecessor of currentNode != neightbour && predecessor of neightbour != currentNode
-     * @param currentNode
-     */
-    private void setupPredecessors(Node currentNode) {
+            //the priorities are monotone, so no path over a cell of this direction can be cheaper than the best path
+            if (priority >= context.getBestCost()) break;
+            context.setLowestPriority(fromStart, priority);
 
-        Node neighbour = currentNode.getPredecessor(false);
-
-        while(neighbour != null){
-            synchronized (neighbour){
-                neighbour.setPredecessor(currentNode, true);
-                currentNode = neighbour;
-                neighbour = currentNode.getPredecessor(false);
+            if (currentNode == endIndex) {
+                context.offerMeetingPoint(currentNode, costToReach);
+                break;
             }
-        }
-    }
 
+            //found a node that has been explored by the other pathworker, its cost from the other side is final
+            if ((context.getStatus(currentNode) & otherId) != 0) {
+                context.offerMeetingPoint(currentNode, costToReach + context.getCostToReach(currentNode, !fromStart));
+            }
 
-    /**
-     * calculates the cost to reach the neighbour Node from Node n
-     *
-     * @param n
-     * @param neighbour
-     * @return
-     */
-    private double calculateCostToReach(Node n, Node neighbour) {
-        int x = Math.abs(n.getX() - neighbour.getX());
-        int y = Math.abs(n.getY() - neighbour.getY());
-
-        return Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
-    }
+            //setting the status
+            context.setStatus(currentNode, id);
 
-    /**
-     * function to reset the successor of start and end node and set the costs to NAN to indicate that no path was found
-     */
-    private void noPathFound() {
-        synchronized (grid) {
-            if(!grid.isSolved()) {
-                startNode.setPredecessor(null, true);
-                startNode.setPredecessor(null, false);
-                endNode.setPredecessor(null, true);
-                endNode.setPredecessor(null, false);
-                startNode.setCostToReach(Double.NaN, true);
-                startNode.setCostToReach(Double.NaN, false);
-                endNode.setCostToReach(Double.NaN, true);
-                endNode.setCostToReach(Double.NaN, false);
+            //rejected, the other direction has no cell that can lead to a cheaper path over this one
+            long otherLowestPriority = context.getLowestPriority(!fromStart);
+            if (otherLowestPriority != 0
+                    && costToReach + otherLowestPriority - grid.estimateCost(currentNode, startX, startY) >= context.getBestCost()) {
+                continue;
             }
+
+            //explore neighbours
+            expandNode(currentNode, costToReach);
         }
-    }
 
-    @Override
-    public Void call() throws Exception {
-        id = Thread.currentThread().getId();
-        aStarPathfinding();
-        return null;
+        if (fromStart) context.setFrontier(frontier);
+        context.addWork(expanded, generated, openList);
+
+        //stops the other pathworker, its remaining cells cant lead to a cheaper path either
+        context.getAndSetSolved(true);
     }
 
     /**
-     * Comparator for node distance
-     * compares the distance of the nodes to the end node
-     * distance = current cost to reach node + heuristic cost to reach the end
-     * heuristic cost = air distance between the node and the end
+     * expands the node by relaxing all of its traversable neighbours
+     * the neighbours are read from the neighbour mask of the cell
+     *
+     * @param currentNode
+     * @param currentCost the cost to reach the node
      */
-    private class SortByDistance implements Comparator<Node> {
+    private void expandNode(int currentNode, long currentCost) {
+        int mask = grid.getNeighbourMask(currentNode);
+        expanded++;
+        generated += Integer.bitCount(mask);
 
-        @Override
-        public int compare(Node a, Node b) {
+        while (mask != 0) {
+            int direction = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
 
-            double distanceA = a.getCostToReach(fromStart) + calculateHeuristicCost(a);
-            double distanceB = b.getCostToReach(fromStart) + calculateHeuristicCost(b);
+            int neighbour = currentNode + grid.getDirectionOffset(direction);
 
-            double compared = distanceA - distanceB;
+            long costToReach = currentCost + grid.getStepCost(currentNode, direction);
 
-            if (compared > 0) return 1;
-            else return -1;
-        }
+            //also skips the nodes this worker already explored, the heuristic is consistent
+            if (costToReach >= context.getCostToReach(neighbour, fromStart)) continue;
+
+            context.setCostToReach(neighbour, costToReach, fromStart);
+            context.setPredecessor(neighbour, currentNode, fromStart);
+
+            //the cost from the other side is only final and visible once the other pathworker explored the node
+            if ((context.getStatus(neighbour) & otherId) != 0) {
+                context.offerMeetingPoint(neighbour, costToReach + context.getCostToReach(neighbour, !fromStart));
+            }
 
+            long heuristic = estimateCost(neighbour);
+            openList.insertOrUpdate(neighbour, costToReach + heuristic, heuristic);
+        }
     }
+
     /**
-     * calculates the heurstic (air distance) costs to reach the end node from node n
-     *
-     * @param n
-     * @return
+     * @return the estimated cost from the cell to the end, the better one of the octile distance and the landmark estimate
      */
-    private double calculateHeuristicCost(Node n) {
-        int x = Math.abs(n.getX() - endNode.getX());
-        int y = Math.abs(n.getY() - endNode.getY());
+    private long estimateCost(int cell) {
+        long estimate = grid.estimateCost(cell, endX, endY);
+        return landmarks == null ? estimate : Math.max(estimate, landmarks.estimateCost(cell, endDistances));
+    }
 
-        return Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
+    @Override
+    public Void call() {
+        aStarPathfinding();
+        return null;
     }
 
     public Node getStartNode() {
-        return this.startNode;
+        return grid.getNode(startIndex);
     }
 
     public Node getEndNode() {
-        return this.endNode;
+        return grid.getNode(endIndex);
     }
 }
@@ -0,0 +1,270 @@
+package xyz.GPSforLEGENDS;
+
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * reads the traversability or the terrain costs of all pixels of an image directly from the DataBuffer of its raster
+ * a pixel is traversable if it is opaque white, which is the same as image.getRGB(x, y) == -1.
+ * int, byte and packed binary rasters are read without going through the color model for every pixel,
+ * all other images fall back to getRGB
+ */
+final class RasterReader {
+
+    // every task computes whole words of the bitset, so no word is written by two threads
+    private static final int WORDS_PER_TASK = 1024;
+
+    private RasterReader(){
+    }
+
+    /**
+     * reads the image in parallel on the common fork join pool
+     * @param image not null
+     * @return little endian bitset with a set bit for every traversable pixel, index = y * width + x, one long per 64 pixels
+     */
+    static ByteBuffer readTraversable(BufferedImage image){
+        return readTraversable(image.getWidth(), image.getHeight(), createReader(image));
+    }
+
+    /**
+     * @param costs the terrain cost of every cell, see readCosts
+     * @return little endian bitset with a set bit for every cell that is not a wall
+     */
+    static ByteBuffer readTraversable(ByteBuffer costs, int width, int height){
+        return readTraversable(width, height, (x, y) -> costs.get(y * width + x) != TerrainCosts.WALL);
+    }
+
+    private static ByteBuffer readTraversable(int width, int height, PixelReader reader){
+        int cells = width * height;
+        int words = (cells + 63) / 64;
+        ByteBuffer traversable = ByteBuffer.allocate(words * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        int tasks = (words + WORDS_PER_TASK - 1) / WORDS_PER_TASK;
+
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            int firstWord = task * WORDS_PER_TASK;
+            int lastWord = Math.min(words, firstWord + WORDS_PER_TASK);
+
+            int index = firstWord * 64;
+            int x = index % width;
+            int y = index / width;
+            for(int word = firstWord; word < lastWord; word++){
+                int end = (int) Math.min((long) word * 64 + 64, cells);
+
+                //the word is collected in a local and written once
+                long bits = 0;
+                for(; index < end; index++){
+                    if(reader.isTraversable(x, y)) bits |= 1L << index;
+
+                    if(++x == width){
+                        x = 0;
+                        y++;
+                    }
+                }
+                traversable.putLong(word * 8, bits);
+            }
+        });
+        return traversable;
+    }
+
+    /**
+     * reads the terrain cost of every pixel, the rows are read in parallel on the common fork join pool
+     * gray and indexed images are converted with a table of all pixel values, so the terrain costs are only asked once per value
+     * @param image not null
+     * @param terrainCosts not null
+     * @return one unsigned byte per cell, index = y * width + x
+     * @exception IllegalArgumentException if the terrain costs return a cost outside of 0 to TerrainCosts.MAX_COST
+     */
+    static ByteBuffer readCosts(BufferedImage image, TerrainCosts terrainCosts){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer costs = ByteBuffer.allocate(width * height);
+
+        CostReader reader;
+        SampleReader samples = createSampleReader(image);
+        if(samples != null){
+            ColorModel colorModel = image.getColorModel();
+            int[] table = new int[1 << image.getSampleModel().getSampleSize(0)];
+            for(int value = 0; value < table.length; value++){
+                table[value] = getCost(terrainCosts, colorModel.getRGB(value));
+            }
+            reader = (x, y) -> table[samples.getSample(x, y)];
+        }
+        else{
+            reader = (x, y) -> getCost(terrainCosts, image.getRGB(x, y));
+        }
+
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int index = y * width;
+            for(int x = 0; x < width; x++, index++){
+                costs.put(index, (byte) reader.getCost(x, y));
+            }
+        });
+        return costs;
+    }
+
+    private static int getCost(TerrainCosts terrainCosts, int rgb){
+        int cost = terrainCosts.getCost(rgb);
+        if(cost < TerrainCosts.WALL || cost > TerrainCosts.MAX_COST){
+            throw new IllegalArgumentException("The cost " + cost + " of the color " + Integer.toHexString(rgb) + " is outside of 0 to " + TerrainCosts.MAX_COST);
+        }
+        return cost;
+    }
+
+    private static PixelReader createReader(BufferedImage image){
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        ColorModel colorModel = image.getColorModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        //coordinates of the image in the sample model, differs from 0 for sub images
+        int translateX = -raster.getSampleModelTranslateX();
+        int translateY = -raster.getSampleModelTranslateY();
+
+        if(dataBuffer.getNumBanks() != 1) return fallbackReader(image);
+
+        //gray, indexed and packed binary values are looked up in a table of all values, since they need the color model
+        SampleReader samples = createSampleReader(image);
+        if(samples != null){
+            boolean[] white = createLookupTable(colorModel, sampleModel.getSampleSize(0));
+            return (x, y) -> white[samples.getSample(x, y)];
+        }
+
+        //one pixel per int, e.g. TYPE_INT_RGB and TYPE_INT_ARGB
+        if(dataBuffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel
+                && colorModel instanceof DirectColorModel && isSrgb8Bit(colorModel)){
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            int offset = dataBuffer.getOffset();
+            int stride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+
+            //white and opaque if all bits of all components are set
+            DirectColorModel directColorModel = (DirectColorModel) colorModel;
+            int white = directColorModel.getRedMask() | directColorModel.getGreenMask() | directColorModel.getBlueMask()
+                    | (directColorModel.hasAlpha() ? directColorModel.getAlphaMask() : 0);
+
+            return (x, y) -> (data[offset + (y + translateY) * stride + x + translateX] & white) == white;
+        }
+
+        //one byte per band, e.g. TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR. all bands 8 bit sRGB, white and opaque if every band is 255
+        if(dataBuffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel
+                && colorModel instanceof ComponentColorModel && isSrgb8Bit(colorModel)){
+            byte[] data = ((DataBufferByte) dataBuffer).getData();
+            ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+            int offset = dataBuffer.getOffset();
+            int stride = componentSampleModel.getScanlineStride();
+            int pixelStride = componentSampleModel.getPixelStride();
+            int[] bandOffsets = componentSampleModel.getBandOffsets();
+
+            return (x, y) -> {
+                int pixel = offset + (y + translateY) * stride + (x + translateX) * pixelStride;
+                for(int bandOffset : bandOffsets){
+                    if(data[pixel + bandOffset] != (byte) 0xFF) return false;
+                }
+                return true;
+            };
+        }
+
+        return fallbackReader(image);
+    }
+
+    /**
+     * reader for the raw value of images with a single band of at most 8 bits that need the color model for every value,
+     * e.g. TYPE_BYTE_GRAY, TYPE_BYTE_INDEXED and TYPE_BYTE_BINARY
+     * @return null if the image has an other format
+     */
+    private static SampleReader createSampleReader(BufferedImage image){
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        ColorModel colorModel = image.getColorModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        if(dataBuffer.getNumBanks() != 1 || !(dataBuffer instanceof DataBufferByte)) return null;
+
+        byte[] data = ((DataBufferByte) dataBuffer).getData();
+        int offset = dataBuffer.getOffset();
+        int translateX = -raster.getSampleModelTranslateX();
+        int translateY = -raster.getSampleModelTranslateY();
+
+        //one byte per pixel
+        if(sampleModel instanceof ComponentSampleModel){
+            ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+            int[] bandOffsets = componentSampleModel.getBandOffsets();
+
+            if(bandOffsets.length != 1 || sampleModel.getSampleSize(0) != 8
+                    || !(colorModel instanceof IndexColorModel || colorModel.getNumComponents() == 1)){
+                return null;
+            }
+
+            int stride = componentSampleModel.getScanlineStride();
+            int pixelStride = componentSampleModel.getPixelStride();
+            int bandOffset = offset + bandOffsets[0];
+            return (x, y) -> data[bandOffset + (y + translateY) * stride + (x + translateX) * pixelStride] & 0xFF;
+        }
+
+        //several pixels per byte
+        if(sampleModel instanceof MultiPixelPackedSampleModel){
+            MultiPixelPackedSampleModel packedSampleModel = (MultiPixelPackedSampleModel) sampleModel;
+            int stride = packedSampleModel.getScanlineStride();
+            int bitOffset = packedSampleModel.getDataBitOffset();
+            int bits = packedSampleModel.getPixelBitStride();
+            int pixelMask = (1 << bits) - 1;
+
+            return (x, y) -> {
+                int bit = (x + translateX) * bits + bitOffset;
+                int value = data[offset + (y + translateY) * stride + (bit >>> 3)] & 0xFF;
+                return value >>> (8 - bits - (bit & 7)) & pixelMask;
+            };
+        }
+        return null;
+    }
+
+    private static PixelReader fallbackReader(BufferedImage image){
+        return (x, y) -> image.getRGB(x, y) == -1;
+    }
+
+    /**
+     * @return for every pixel value with the given number of bits true if the color model converts it to opaque white
+     */
+    private static boolean[] createLookupTable(ColorModel colorModel, int bits){
+        boolean[] white = new boolean[1 << bits];
+        for(int value = 0; value < white.length; value++){
+            white[value] = colorModel.getRGB(value) == -1;
+        }
+        return white;
+    }
+
+    private static boolean isSrgb8Bit(ColorModel colorModel){
+        if(!colorModel.getColorSpace().isCS_sRGB()) return false;
+
+        for(int size : colorModel.getComponentSize()){
+            if(size != 8) return false;
+        }
+        return true;
+    }
+
+    private interface PixelReader {
+
+        /**
+         * @return true if the pixel is traversable
+         */
+        boolean isTraversable(int x, int y);
+    }
+
+    private interface CostReader {
+
+        /**
+         * @return the terrain cost of the pixel
+         */
+        int getCost(int x, int y);
+    }
+
+    private interface SampleReader {
+
+        /**
+         * @return the raw value of the pixel
+         */
+        int getSample(int x, int y);
+    }
+}
@@ -0,0 +1,40 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * the algorithms that AStar can use to find a path
+ * @see AStar#setAlgorithm(SearchAlgorithm)
+ */
+public enum SearchAlgorithm {
+
+    /**
+     * AStar over every cell, supports the parallel mode
+     */
+    ASTAR,
+
+    /**
+     * Jump Point Search, finds paths of the same length as ASTAR but only adds jump points to the open list.
+     * always runs with one thread, not supported on weighted grids
+     */
+    JUMP_POINT_SEARCH,
+
+    /**
+     * hierarchical pathfinding (HPA*) on a HierarchicalGraph of the grid, finds near optimal paths.
+     * always runs with one thread
+     * @see AStar#setHierarchicalGraph(HierarchicalGraph)
+     */
+    HIERARCHICAL,
+
+    /**
+     * Hash Distributed AStar, searches a single query with AStar.getThreads() threads and finds the shortest path.
+     * runs with one thread per query in AStar.findPaths and if the AStar is not parallel
+     * @see AStar#setThreads(int)
+     */
+    HASH_DISTRIBUTED,
+
+    /**
+     * AStar with the ALT heuristic of precomputed Landmarks, finds the shortest path and expands far fewer cells on mazes and corridors.
+     * always runs with one thread
+     * @see AStar#setLandmarks(Landmarks)
+     */
+    ALT
+}
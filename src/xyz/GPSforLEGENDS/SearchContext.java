@@ -0,0 +1,338 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * mutable state of a single search on a NodeGrid
+ * the grid itself is never written by a search. every search borrows a context from the pool of the grid and returns it when it is finished,
+ * so one grid can be searched by many threads at the same time without locks
+ * in parallel mode both pathworkers of a query share the context borrowed by the thread that called AStar.findPath
+ * every value is stamped with the generation of the search that wrote it. values with an older stamp read as unvisited,
+ * so a reset only increments the generation and a search only costs work for the cells it actually touches
+ * @see NodeGrid#acquireSearchContext()
+ */
+class SearchContext {
+
+    private final int cells;
+
+    // the status stores the generation in the upper bits, so it has to fit into 30 bits
+    static final int MAX_GENERATION = (1 << 30) - 1;
+
+    // generation of the current search, starts at 1 so that the initial stamps of 0 are stale
+    private int generation;
+
+    // generation that last wrote the cost and predecessor of a cell, [0] = from start, [1] = from end
+    private final int[][] stamps;
+
+    // cost to reach a cell in fixed point units, [0] = from start, [1] = from end
+    private final long[][] costToReach;
+
+    // index of the predecessor, -1 if there is none. [0] = from start, [1] = from end
+    private final int[][] predecessor;
+
+    // generation << 2 | ids of the pathworkers that explored the cell
+    private final AtomicIntegerArray status;
+
+    // [0] = from start, [1] = from end
+    private final OpenList[] openLists = new OpenList[2];
+    private final OpenListType[] openListTypes = new OpenListType[2];
+
+    // receives the path of a search that returns it as a list, reused by all searches with this context
+    private final PathBuffer pathBuffer = new PathBuffer();
+
+    private final AtomicBoolean isSolved = new AtomicBoolean(false);
+
+    // index of the cell where the paths of both directions meet, -1 if no path was found
+    private volatile int meetingPoint = -1;
+
+    // cost of the best path found so far, Long.MAX_VALUE if there is none
+    private volatile long bestCost = Long.MAX_VALUE;
+
+    // lowest priority polled from the open list of each direction, 0 before its pathworker started
+    private volatile long lowestPriorityFromStart;
+    private volatile long lowestPriorityFromEnd;
+
+    // deadline and cancellation of an asynchronous search, null if the search runs until it is finished
+    private volatile SearchControl control;
+
+    // the cell explored from the start with the lowest estimated cost to the end, -1 if it is not tracked
+    private volatile int frontier = -1;
+
+    // work of the current search for its SearchStats, added by every worker when it is finished.
+    // only cleared by clearWork, since HierarchicalGraph resets the context between its abstract search and the refinement
+    private long expanded, generated, pushes, pops, decreaseKeys;
+    private int peakOpenListSize;
+
+    SearchContext(int cells){
+        this(cells, 0);
+    }
+
+    /**
+     * @param generation generation before the first reset, lets tests reach the overflow of the counter without a billion resets
+     */
+    SearchContext(int cells, int generation){
+        this.cells = cells;
+        this.generation = generation;
+        costToReach = new long[2][cells];
+        predecessor = new int[2][cells];
+        stamps = new int[2][cells];
+        status = new AtomicIntegerArray(cells);
+        reset();
+    }
+
+    /**
+     * resets the context to its original state, has to be called before every search
+     * O(1), only when the generation counter overflows all stamps are cleared
+     */
+    void reset(){
+        if(generation == MAX_GENERATION){
+            Arrays.fill(stamps[0], 0);
+            Arrays.fill(stamps[1], 0);
+            for(int i = 0; i < cells; i++){
+                status.lazySet(i, 0);
+            }
+            generation = 0;
+        }
+        generation++;
+        meetingPoint = -1;
+        bestCost = Long.MAX_VALUE;
+        lowestPriorityFromStart = 0;
+        lowestPriorityFromEnd = 0;
+        control = null;
+        frontier = -1;
+        isSolved.set(false);
+    }
+
+    PathBuffer getPathBuffer(){
+        return pathBuffer;
+    }
+
+    /**
+     * the open list is created on first use and reused by all following searches with the same type
+     * @param fromStart the direction of the search
+     * @param type the implementation of the open list
+     * @return an empty open list
+     */
+    OpenList getOpenList(boolean fromStart, OpenListType type){
+        int direction = fromStart ? 0 : 1;
+
+        if(openListTypes[direction] != type){
+            openLists[direction] = type.create(cells);
+            openListTypes[direction] = type;
+        }
+        else{
+            openLists[direction].clear();
+        }
+        return openLists[direction];
+    }
+
+    /**
+     * @return the cost to reach the cell in fixed point units, Long.MAX_VALUE if the cell was not reached by the current search
+     * @see NodeGrid#STRAIGHT_COST
+     */
+    long getCostToReach(int index, boolean fromStart){
+        int direction = fromStart ? 0 : 1;
+        return stamps[direction][index] == generation ? costToReach[direction][index] : Long.MAX_VALUE;
+    }
+
+    void setCostToReach(int index, long cost, boolean fromStart){
+        int direction = touch(index, fromStart);
+        costToReach[direction][index] = cost;
+    }
+
+    /**
+     * @return index of the predecessor, -1 if there is none in the current search
+     */
+    int getPredecessor(int index, boolean fromStart){
+        int direction = fromStart ? 0 : 1;
+        return stamps[direction][index] == generation ? predecessor[direction][index] : -1;
+    }
+
+    void setPredecessor(int index, int predecessorIndex, boolean fromStart){
+        int direction = touch(index, fromStart);
+        predecessor[direction][index] = predecessorIndex;
+    }
+
+    /**
+     * @return 0 if the cell was not explored by the current search, otherwise the ids of the pathworkers that explored it.
+     * 1 = from start, 2 = from end, 3 = both
+     */
+    int getStatus(int index){
+        int value = status.get(index);
+        return (value >>> 2) == generation ? value & 3 : 0;
+    }
+
+    /**
+     * marks the cell as explored by the pathworker, the ids of both pathworkers can be set at the same time
+     * the write is volatile, so everything the pathworker wrote for the cell before is visible to the other pathworker once it sees the id
+     * @param id 1 or 2
+     */
+    void setStatus(int index, int id){
+        int stamped = generation << 2;
+        while(true){
+            int value = status.get(index);
+            int updated = (value >>> 2) == generation ? value | id : stamped | id;
+
+            if(value == updated || status.compareAndSet(index, value, updated)) return;
+        }
+    }
+
+    /**
+     * brings the cost and predecessor of the cell to the current generation
+     * @return the direction index
+     */
+    private int touch(int index, boolean fromStart){
+        int direction = fromStart ? 0 : 1;
+        if(stamps[direction][index] != generation){
+            stamps[direction][index] = generation;
+            costToReach[direction][index] = Long.MAX_VALUE;
+            predecessor[direction][index] = -1;
+        }
+        return direction;
+    }
+
+    boolean isSolved(){
+        return this.isSolved.get();
+    }
+
+    boolean getAndSetSolved(boolean solved){
+        return this.isSolved.getAndSet(solved);
+    }
+
+    /**
+     * the path runs from the start over the predecessors from start to the meeting point
+     * and from there over the predecessors from end to the end
+     * @return index of the cell where the search finished, -1 if no path was found
+     */
+    int getMeetingPoint(){
+        return meetingPoint;
+    }
+
+    void setMeetingPoint(int index){
+        this.meetingPoint = index;
+    }
+
+    /**
+     * @return cost of the best path found so far, Long.MAX_VALUE if there is none
+     */
+    long getBestCost(){
+        return bestCost;
+    }
+
+    /**
+     * sets the cell as meeting point if the path over it is cheaper than the best path found so far
+     * @param index the cell where the paths of both directions meet
+     * @param cost the cost of the path over the cell
+     */
+    synchronized void offerMeetingPoint(int index, long cost){
+        if(cost < bestCost){
+            meetingPoint = index;
+            bestCost = cost;
+        }
+    }
+
+    /**
+     * @return the lowest priority polled by the pathworker of the direction, 0 if it has not polled a cell yet
+     */
+    long getLowestPriority(boolean fromStart){
+        return fromStart ? lowestPriorityFromStart : lowestPriorityFromEnd;
+    }
+
+    void setLowestPriority(boolean fromStart, long priority){
+        if(fromStart) lowestPriorityFromStart = priority;
+        else lowestPriorityFromEnd = priority;
+    }
+
+    /**
+     * sets the control of the current search, has to be called after reset
+     * @param control null if the search runs until it is finished
+     */
+    void setControl(SearchControl control){
+        this.control = control;
+    }
+
+    /**
+     * called by the workers for every polled cell, the control is only asked every SearchControl.CHECK_INTERVAL cells
+     * @param polls the number of cells the worker polled so far
+     * @return true if the search has to stop because its deadline passed or it was cancelled
+     */
+    boolean shouldStop(int polls){
+        if((polls & (SearchControl.CHECK_INTERVAL - 1)) != 0) return false;
+
+        SearchControl control = this.control;
+        return control != null && control.shouldStop();
+    }
+
+    /**
+     * the end of the partial path of a stopped search
+     * @return the cell explored from the start with the lowest estimated cost to the end, -1 if the search does not track it
+     */
+    int getFrontier(){
+        return frontier;
+    }
+
+    void setFrontier(int index){
+        this.frontier = index;
+    }
+
+    /**
+     * adds the work of a finished worker to the work of the current search
+     * @param expanded number of expanded cells
+     * @param generated number of successors the worker looked at
+     * @param openList the open list of the worker, its counters are added
+     */
+    void addWork(long expanded, long generated, OpenList openList){
+        addWork(expanded, generated, openList.getPushes(), openList.getPops(), openList.getDecreaseKeys(), openList.getPeakSize());
+    }
+
+    /**
+     * adds the work of a finished worker to the work of the current search
+     * @param peakOpenListSize the largest size of the open list of the worker, the search keeps the largest one of all workers
+     */
+    synchronized void addWork(long expanded, long generated, long pushes, long pops, long decreaseKeys, int peakOpenListSize){
+        this.expanded += expanded;
+        this.generated += generated;
+        this.pushes += pushes;
+        this.pops += pops;
+        this.decreaseKeys += decreaseKeys;
+        this.peakOpenListSize = Math.max(this.peakOpenListSize, peakOpenListSize);
+    }
+
+    /**
+     * sets the work of the search to 0, has to be called before a search that is measured
+     */
+    synchronized void clearWork(){
+        expanded = 0;
+        generated = 0;
+        pushes = 0;
+        pops = 0;
+        decreaseKeys = 0;
+        peakOpenListSize = 0;
+    }
+
+    synchronized long getExpanded(){
+        return expanded;
+    }
+
+    synchronized long getGenerated(){
+        return generated;
+    }
+
+    synchronized long getPushes(){
+        return pushes;
+    }
+
+    synchronized long getPops(){
+        return pops;
+    }
+
+    synchronized long getDecreaseKeys(){
+        return decreaseKeys;
+    }
+
+    synchronized int getPeakOpenListSize(){
+        return peakOpenListSize;
+    }
+}
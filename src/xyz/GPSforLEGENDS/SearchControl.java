@@ -0,0 +1,47 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * deadline and cancellation of a single asynchronous search, shared by the future of the query and the workers that search it.
+ * the workers only ask it every few hundred cells, since reading the clock costs more than expanding a cell
+ * @see AStar#findPathAsync(PathQuery, long, java.util.concurrent.TimeUnit, java.util.concurrent.Executor)
+ */
+class SearchControl {
+
+    // the number of polled cells between two checks, a power of 2
+    static final int CHECK_INTERVAL = 256;
+
+    // System.nanoTime() of the deadline
+    private final long deadline;
+
+    private volatile boolean cancelled;
+
+    // set by the first check that found the deadline passed or the search cancelled
+    private volatile boolean stopped;
+
+    /**
+     * @param timeout nanoseconds from now until the deadline, Long.MAX_VALUE for no deadline
+     */
+    SearchControl(long timeout){
+        this.deadline = System.nanoTime() + timeout;
+    }
+
+    void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * @return true if the search has to stop, the search counts as stopped from then on
+     */
+    boolean shouldStop(){
+        //the difference is compared since the clock can overflow
+        if(!stopped && (cancelled || System.nanoTime() - deadline >= 0)) stopped = true;
+        return stopped;
+    }
+
+    /**
+     * @return true if a check stopped the search, its result is incomplete then
+     */
+    boolean isStopped(){
+        return stopped;
+    }
+}
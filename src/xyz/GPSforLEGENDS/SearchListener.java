@@ -0,0 +1,12 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * receives the statistics of every search of an AStar. it is called on the thread that ran the search, right after the search,
+ * so it has to be fast and thread safe if the AStar is used by many threads. an exception of the listener is thrown by the search
+ * @see AStar#setSearchListener(SearchListener)
+ * @see SearchMetrics
+ */
+public interface SearchListener {
+
+    void searchFinished(SearchStats stats);
+}
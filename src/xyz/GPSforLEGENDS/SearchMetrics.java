@@ -0,0 +1,201 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * a SearchListener that aggregates the statistics of all searches into histograms, for capacity planning and regression detection.
+ * recording a search only increments a few counters without locks or allocations, so it can stay enabled in production.
+ * one instance can be the listener of many AStar instances
+ * @see AStar#setSearchListener(SearchListener)
+ */
+public class SearchMetrics implements SearchListener {
+
+    private final Map<PathResult.Status, LongAdder> searches = new EnumMap<>(PathResult.Status.class);
+
+    private final LongAdder cachedSearches = new LongAdder();
+
+    private final Map<SearchStats.Phase, Histogram> phaseNanos = new EnumMap<>(SearchStats.Phase.class);
+
+    private final Histogram totalNanos = new Histogram();
+
+    private final Histogram expanded = new Histogram();
+
+    private final Histogram generated = new Histogram();
+
+    private final Histogram peakOpenListSize = new Histogram();
+
+    public SearchMetrics(){
+        for(PathResult.Status status : PathResult.Status.values()){
+            searches.put(status, new LongAdder());
+        }
+        for(SearchStats.Phase phase : SearchStats.Phase.values()){
+            phaseNanos.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void searchFinished(SearchStats stats) {
+        searches.get(stats.getStatus()).increment();
+        if(stats.isCached()) cachedSearches.increment();
+
+        for(SearchStats.Phase phase : SearchStats.Phase.values()){
+            phaseNanos.get(phase).record(stats.getNanos(phase));
+        }
+        totalNanos.record(stats.getTotalNanos());
+        expanded.record(stats.getExpanded());
+        generated.record(stats.getGenerated());
+        peakOpenListSize.record(stats.getPeakOpenListSize());
+    }
+
+    /**
+     * @return the number of recorded searches
+     */
+    public long getSearches(){
+        long total = 0;
+        for(LongAdder count : searches.values()){
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of recorded searches with the status
+     */
+    public long getSearches(PathResult.Status status){
+        if(status == null) throw new NullPointerException("PathResult.Status status cant be null");
+
+        return searches.get(status).sum();
+    }
+
+    /**
+     * @return the number of recorded searches that were answered from the path cache
+     */
+    public long getCachedSearches(){
+        return cachedSearches.sum();
+    }
+
+    /**
+     * @return the wall times of the phase in nanoseconds
+     */
+    public Histogram getNanos(SearchStats.Phase phase){
+        if(phase == null) throw new NullPointerException("SearchStats.Phase phase cant be null");
+
+        return phaseNanos.get(phase);
+    }
+
+    /**
+     * @return the wall times of the whole searches in nanoseconds
+     */
+    public Histogram getTotalNanos(){
+        return totalNanos;
+    }
+
+    public Histogram getExpanded(){
+        return expanded;
+    }
+
+    public Histogram getGenerated(){
+        return generated;
+    }
+
+    public Histogram getPeakOpenListSize(){
+        return peakOpenListSize;
+    }
+
+    /**
+     * histogram of non negative values with logarithmic buckets: every power of two is split into 8 buckets of equal width,
+     * so a percentile is at most 12.5% above the true value. recording is lock free and never allocates,
+     * the buckets cover the whole range of long
+     */
+    public static class Histogram {
+
+        // number of buckets per power of two, as bits
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @param value a negative value is recorded as 0
+         */
+        public void record(long value){
+            value = Math.max(value, 0);
+
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long getCount(){
+            return count.sum();
+        }
+
+        /**
+         * @return the mean of all recorded values, 0 if there are none
+         */
+        public double getMean(){
+            long values = count.sum();
+            return values == 0 ? 0 : (double) sum.sum() / values;
+        }
+
+        /**
+         * @return the largest recorded value, 0 if there are none
+         */
+        public long getMax(){
+            return max.get();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the bucket that contains the percentile, but not more than the largest value. 0 if there are no values
+         * @exception IllegalArgumentException if the percentile is outside of 0 and 100
+         */
+        public long getPercentile(double percentile){
+            if(percentile < 0 || percentile > 100) throw new IllegalArgumentException("The percentile has to be between 0 and 100");
+
+            //the counters are read one after another, so values recorded in the meantime can be missing
+            long values = 0;
+            for(int bucket = 0; bucket < buckets.length(); bucket++){
+                values += buckets.get(bucket);
+            }
+            if(values == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * values));
+            long seen = 0;
+            for(int bucket = 0; bucket < buckets.length(); bucket++){
+                seen += buckets.get(bucket);
+                if(seen >= rank) return Math.min(upperBound(bucket), getMax());
+            }
+            return getMax();
+        }
+
+        /**
+         * values below SUB_BUCKETS have a bucket each, above that every power of two has SUB_BUCKETS buckets
+         */
+        private static int bucketOf(long value){
+            if(value < SUB_BUCKETS) return (int) value;
+
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int bucket){
+            if(bucket < SUB_BUCKETS) return bucket;
+
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lowerBound + (1L << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package xyz.GPSforLEGENDS;
+
+/**
+ * statistics of a single search of AStar, attached to its PathResult and reported to the SearchListener of the AStar.
+ * the counters are summed over all workers of the search. a hierarchical search only counts the work on its abstract graph,
+ * a jump point search counts jump points as successors
+ * @see AStar#setSearchListener(SearchListener)
+ */
+public class SearchStats {
+
+    /**
+     * the phases of a search whose wall time is measured
+     */
+    public enum Phase {
+        /**
+         * the component check, the cache lookup and the landmarks of SearchAlgorithm.ALT, which are computed on the first ALT search
+         */
+        PREPARATION,
+        /**
+         * the search itself
+         */
+        SEARCH,
+        /**
+         * the path is read from the search context and put into the path cache
+         */
+        RECONSTRUCTION
+    }
+
+    private final NodeGrid grid;
+
+    private final SearchAlgorithm algorithm;
+
+    private final int threads;
+
+    //cell indices
+    private final int start, end;
+
+    private final PathResult.Status status;
+
+    private final boolean cached;
+
+    private final int pathLength;
+
+    // -1 if no path was found or there was no search
+    private final int meetingPoint;
+
+    private final long expanded, generated, pushes, pops, decreaseKeys;
+
+    private final int peakOpenListSize;
+
+    // wall time of every phase in nanoseconds, by Phase.ordinal()
+    private final long[] nanos;
+
+    /**
+     * @param threads the number of threads that searched, 0 if the query was answered without a search
+     * @param context the finished search, null if there was no search
+     * @param nanos the wall time of every phase, by Phase.ordinal()
+     */
+    SearchStats(NodeGrid grid, SearchAlgorithm algorithm, int threads, int start, int end, PathResult.Status status, boolean cached,
+                int pathLength, SearchContext context, long[] nanos){
+        this.grid = grid;
+        this.algorithm = algorithm;
+        this.threads = threads;
+        this.start = start;
+        this.end = end;
+        this.status = status;
+        this.cached = cached;
+        this.pathLength = pathLength;
+        this.nanos = nanos;
+
+        if(context == null){
+            this.meetingPoint = -1;
+            this.expanded = 0;
+            this.generated = 0;
+            this.pushes = 0;
+            this.pops = 0;
+            this.decreaseKeys = 0;
+            this.peakOpenListSize = 0;
+        }
+        else{
+            this.meetingPoint = context.getMeetingPoint();
+            this.expanded = context.getExpanded();
+            this.generated = context.getGenerated();
+            this.pushes = context.getPushes();
+            this.pops = context.getPops();
+            this.decreaseKeys = context.getDecreaseKeys();
+            this.peakOpenListSize = context.getPeakOpenListSize();
+        }
+    }
+
+    public SearchAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the number of threads that searched the query, 0 if it was answered without a search
+     * (from the path cache or because start and end are not connected)
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public Node getStart() {
+        return grid.getNode(start);
+    }
+
+    public Node getEnd() {
+        return grid.getNode(end);
+    }
+
+    /**
+     * @return FOUND, UNREACHABLE or TIMED_OUT
+     */
+    public PathResult.Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the path was taken from the path cache
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return the number of nodes of the path, or of the partial path of a search that timed out. 0 if there is none
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return the node where both directions of a parallel search met, the end for the other searches. null if the search found no path
+     * or there was no search
+     */
+    public Node getMeetingPoint() {
+        return meetingPoint < 0 ? null : grid.getNode(meetingPoint);
+    }
+
+    /**
+     * @return the number of cells whose successors were generated
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * @return the number of successors of the expanded cells, including the ones that were already reached cheaper
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return the number of cells inserted into the open lists
+     */
+    public long getPushes() {
+        return pushes;
+    }
+
+    /**
+     * @return the number of cells polled from the open lists
+     */
+    public long getPops() {
+        return pops;
+    }
+
+    /**
+     * @return the number of priority changes of cells in the open lists, always 0 for SearchAlgorithm.HASH_DISTRIBUTED
+     * which inserts the cells again instead
+     */
+    public long getDecreaseKeys() {
+        return decreaseKeys;
+    }
+
+    /**
+     * @return the largest size of the open list of a single worker
+     */
+    public int getPeakOpenListSize() {
+        return peakOpenListSize;
+    }
+
+    /**
+     * @return the wall time of the phase in nanoseconds, 0 for the phases that did not run
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return the wall time of all phases in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for(long phaseNanos : nanos){
+            total += phaseNanos;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats{" + algorithm + ", " + status + (cached ? " (cached)" : "")
+                + ", threads=" + threads + ", expanded=" + expanded + ", generated=" + generated
+                + ", pushes=" + pushes + ", pops=" + pops + ", decreaseKeys=" + decreaseKeys + ", peakOpenListSize=" + peakOpenListSize
+                + ", pathLength=" + pathLength + ", totalMicros=" + getTotalNanos() / 1000 + "}";
+    }
+}
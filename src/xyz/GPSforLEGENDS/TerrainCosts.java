@@ -0,0 +1,60 @@
+package xyz.GPSforLEGENDS;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * maps the color of a pixel to the cost of traversing its cell, used to create a weighted NodeGrid
+ * a cell costs between 1 and MAX_COST, WALL marks a cell that is not traversable
+ * moving between two neighbours costs the length of the step times the average cost of both cells
+ * @see NodeGrid#NodeGrid(java.awt.image.BufferedImage, TerrainCosts)
+ */
+@FunctionalInterface
+public interface TerrainCosts {
+
+    int WALL = 0;
+
+    int MAX_COST = 255;
+
+    /**
+     * @param rgb the color of the pixel in the default sRGB color model, like BufferedImage.getRGB
+     * @return the cost of the cell, WALL or 1 to MAX_COST
+     */
+    int getCost(int rgb);
+
+    /**
+     * the darker an opaque pixel is, the higher is its cost. white costs 1, black is a wall
+     * the gray value of a colored pixel is the average of its red, green and blue component.
+     * pixels that are not opaque are walls
+     * @return the terrain costs
+     */
+    static TerrainCosts grayscale(){
+        return rgb -> {
+            if((rgb >>> 24) != 0xFF) return WALL;
+
+            int gray = ((rgb >>> 16 & 0xFF) + (rgb >>> 8 & 0xFF) + (rgb & 0xFF)) / 3;
+            return gray == 0 ? WALL : 256 - gray;
+        };
+    }
+
+    /**
+     * for images with a few colors, e.g. a palette of terrain types
+     * @param costs the cost of every color, the colors are argb values like BufferedImage.getRGB. colors that are not in the map are walls. Not null
+     * @return the terrain costs
+     * @exception NullPointerException if the map is null
+     * @exception IllegalArgumentException if a cost is outside of 0 to MAX_COST
+     */
+    static TerrainCosts palette(Map<Integer, Integer> costs){
+
+        if(costs == null) throw new NullPointerException("Map costs cant be null");
+
+        Map<Integer, Integer> copy = new HashMap<>(costs);
+        for(Map.Entry<Integer, Integer> entry : copy.entrySet()){
+            int cost = entry.getValue();
+            if(cost < WALL || cost > MAX_COST){
+                throw new IllegalArgumentException("The cost " + cost + " of the color " + Integer.toHexString(entry.getKey()) + " is outside of 0 to " + MAX_COST);
+            }
+        }
+        return rgb -> copy.getOrDefault(rgb, WALL);
+    }
+}
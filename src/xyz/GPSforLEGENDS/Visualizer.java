@@ -56,24 +56,29 @@ public class Visualizer {
         BufferedImage gridImage = new BufferedImage(grid.getWidth(),grid.getHeight(),BufferedImage.TYPE_INT_RGB);
         Color color;
 
+        //the cells explored by the last search that released this context, the last search of the grid if it is searched by one thread at a time
+        SearchContext context = grid.acquireSearchContext();
+        grid.releaseSearchContext(context);
+
         long statusColor = 0;
 
         for(int height = 0; height < grid.getHeight(); height++){
             for(int width = 0; width < grid.getWidth(); width++){
-                Node n = grid.getNode(width,height);
+                int index = grid.index(width,height);
+                int status = context.getStatus(index);
                 color = Color.white;
 
                 if(statusColor == 0){
-                    if(n.getStatus() != 0){
-                        statusColor = n.getStatus();
+                    if(status != 0){
+                        statusColor = status;
                     }
                 }
 
-                if(!n.isTraversable()) color = Color.BLACK;
+                if(!grid.isTraversable(index)) color = Color.BLACK;
 
-                if(n.getStatus() == statusColor && n.getStatus() != 0) color = Color.RED;
+                if(status == statusColor && status != 0) color = Color.RED;
 
-                if(n.getStatus() != 0 && n.getStatus() != statusColor) color = Color.BLUE;
+                if(status != 0 && status != statusColor) color = Color.BLUE;
 
                 gridImage.setRGB(width,height,color.getRGB());
             }
@@ -1,13 +1,33 @@
 package xyz.GPSforLEGENDS;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AStarTest {
@@ -261,4 +281,954 @@ class AStarTest {
         //TODO make the test more accurate
         assertTrue(!path.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findPathWithBucketQueueOnOnePathGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+
+        AStar aStar = new AStar(nodeGrid, false, OpenListType.BUCKET_QUEUE);
+
+        List<Node> path = aStar.findPath(0, 0, 19, 19);
+
+        assertEquals(38, path.size());
+
+        int width = 0;
+        int height = 0;
+
+        for (width = 0; width < 19; width++) {
+            assertEquals(nodeGrid.getNode(width, height), path.get(width));
+        }
+
+        for (height = 1; height < 20; height++) {
+            assertEquals(nodeGrid.getNode(width, height), path.get(18 + height));
+        }
+    }
+
+    @Test
+    void bucketQueueOrder() {
+        BucketQueue exact = new BucketQueue(10, 0);
+        exact.insertOrUpdate(0, 1000, 0);
+        exact.insertOrUpdate(1, 1010, 0);
+        exact.insertOrUpdate(2, 5000, 0);
+        exact.insertOrUpdate(2, 999, 0);
+        assertEquals(2, exact.poll());
+        assertEquals(0, exact.poll());
+        assertEquals(1, exact.poll());
+        assertThrows(NoSuchElementException.class, exact::poll);
+
+        //1000 and 1010 share a bucket of 64 units, the cell inserted last comes first
+        BucketQueue coarse = new BucketQueue(10, BucketQueue.COARSE_SHIFT);
+        coarse.insertOrUpdate(0, 1000, 0);
+        coarse.insertOrUpdate(1, 1010, 0);
+        coarse.insertOrUpdate(2, 1100, 0);
+        assertEquals(1, coarse.poll());
+        assertEquals(0, coarse.poll());
+        assertEquals(2, coarse.poll());
+        assertTrue(coarse.isEmpty());
+        assertThrows(NoSuchElementException.class, coarse::poll);
+    }
+
+    @Test
+    void bucketQueueSkipsEmptyBuckets() {
+        //priorities far apart, across the words of the bitmap and around the end of the ring
+        BucketQueue queue = new BucketQueue(100);
+        long[] priorities = new long[100];
+        for (int cell = 0; cell < 100; cell++) {
+            priorities[cell] = 1_000_000 + (cell * 7919L) % 100 * 5003;
+            queue.insertOrUpdate(cell, priorities[cell], 0);
+        }
+
+        long previous = -1;
+        for (int i = 0; i < 50; i++) {
+            int cell = queue.poll();
+            assertTrue(priorities[cell] >= previous);
+            previous = priorities[cell];
+        }
+        //priorities after the polled ones wrap around the ring
+        for (int cell = 100; cell-- > 0; ) {
+            if (!queue.contains(cell)) continue;
+            priorities[cell] = previous + 1 + cell * 300;
+            queue.insertOrUpdate(cell, priorities[cell], 0);
+        }
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            assertTrue(priorities[cell] >= previous);
+            previous = priorities[cell];
+        }
+        assertThrows(NoSuchElementException.class, queue::poll);
+    }
+
+    @Test
+    void findPathWithBucketQueueOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+
+        AStar aStar = new AStar(nodeGrid, false, OpenListType.BUCKET_QUEUE);
+
+        List<Node> path = aStar.findPath(0, 0, 19, 19);
+
+        assertTrue(path == null);
+    }
+
+    @Test
+    void findPathConcurrentlyOnOneGrid() throws IOException, InterruptedException, ExecutionException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<List<Node>>> paths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            paths.add(pool.submit(() -> aStar.findPath(0, 0, 19, 19)));
+        }
+
+        for (Future<List<Node>> path : paths) {
+            assertEquals(38, path.get().size());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void findPathsOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+
+        List<PathQuery> queries = new ArrayList<>();
+        queries.add(new PathQuery(0, 0, 19, 19));
+        queries.add(new PathQuery(0, 19, 19, 19));
+        queries.add(new PathQuery(-1, 0, 19, 19));
+        queries.add(new PathQuery(0, 0, 0, 0));
+
+        List<PathResult> results = aStar.findPaths(queries);
+
+        assertEquals(4, results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i), results.get(i).getQuery());
+        }
+
+        assertEquals(PathResult.Status.UNREACHABLE, results.get(0).getStatus());
+        assertTrue(results.get(0).getPath() == null);
+        assertEquals(PathResult.Status.FOUND, results.get(1).getStatus());
+        assertEquals(20, results.get(1).getPath().size());
+        assertEquals(PathResult.Status.INVALID_COORDINATES, results.get(2).getStatus());
+        assertEquals(PathResult.Status.FOUND, results.get(3).getStatus());
+        assertEquals(1, results.get(3).getPath().size());
+    }
+
+    @Test
+    void findPathMultiThreadWithExecutorOnOnePathGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        AStar aStar = new AStar(nodeGrid, true, OpenListType.DARY_HEAP, pool);
+
+        for (int i = 0; i < 100; i++) {
+            List<Node> path = aStar.findPath(0, 0, 19, 19);
+
+            assertEquals(38, path.size());
+            assertEquals(nodeGrid.getNode(0, 0), path.get(0));
+            assertEquals(nodeGrid.getNode(19, 19), path.get(37));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void findPathWithJumpPointSearchOnClearGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+
+        List<Node> path = aStar.findPath(0, 0, 99, 99);
+
+        assertEquals(100, path.size());
+        for (int i = 1; i < 100; i++) {
+            assertEquals(nodeGrid.getNode(i - 1, i - 1), path.get(i - 1));
+        }
+    }
+
+    @Test
+    void findPathWithJumpPointSearchOnOnePathGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+
+        List<Node> path = aStar.findPath(0, 0, 19, 19);
+
+        assertEquals(38, path.size());
+
+        int width = 0;
+        int height = 0;
+
+        for (width = 0; width < 19; width++) {
+            assertEquals(nodeGrid.getNode(width, height), path.get(width));
+        }
+
+        for (height = 1; height < 20; height++) {
+            assertEquals(nodeGrid.getNode(width, height), path.get(18 + height));
+        }
+    }
+
+    @Test
+    void findPathWithJumpPointSearchOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+
+        List<Node> path = aStar.findPath(0, 0, 19, 19);
+
+        assertTrue(path == null);
+    }
+
+    @Test
+    void findPathWithJumpPointSearchOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        List<Node> expected = aStar.findPath(1100, 50, 1000, 2700);
+
+        aStar.setAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH);
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+
+        //paths with the same length have the same number of straight and diagonal steps
+        assertEquals(expected.size(), path.size());
+        assertEquals(nodeGrid.getNode(1100, 50), path.get(0));
+        assertEquals(nodeGrid.getNode(1000, 2700), path.get(path.size() - 1));
+        for (int i = 1; i < path.size(); i++) {
+            assertTrue(path.get(i).isTraversable());
+            assertTrue(Math.abs(path.get(i).getX() - path.get(i - 1).getX()) <= 1);
+            assertTrue(Math.abs(path.get(i).getY() - path.get(i - 1).getY()) <= 1);
+        }
+    }
+
+    @Test
+    void findPathHierarchicalOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        List<Node> shortest = aStar.findPath(1100, 50, 1000, 2700);
+
+        aStar.setAlgorithm(SearchAlgorithm.HIERARCHICAL);
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+
+        //the hierarchical path is near optimal
+        assertTrue(path.size() >= shortest.size());
+        assertEquals(nodeGrid.getNode(1100, 50), path.get(0));
+        assertEquals(nodeGrid.getNode(1000, 2700), path.get(path.size() - 1));
+        for (int i = 1; i < path.size(); i++) {
+            assertTrue(path.get(i).isTraversable());
+            assertTrue(Math.abs(path.get(i).getX() - path.get(i - 1).getX()) <= 1);
+            assertTrue(Math.abs(path.get(i).getY() - path.get(i - 1).getY()) <= 1);
+        }
+    }
+
+    @Test
+    void findPathHierarchicalOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setHierarchicalGraph(new HierarchicalGraph(nodeGrid, 4));
+        aStar.setAlgorithm(SearchAlgorithm.HIERARCHICAL);
+
+        assertTrue(aStar.findPath(0, 0, 19, 19) == null);
+        assertEquals(20, aStar.findPath(0, 19, 19, 19).size());
+    }
+
+    @Test
+    void findPathOnWeightedGrid() {
+        //a vertical band of cheap terrain is crossed straight
+        AStar aStar = new AStar(new NodeGrid(createBandImage(254), TerrainCosts.grayscale()));
+        List<Node> path = aStar.findPath(0, 15, 29, 15);
+
+        assertEquals(30, path.size());
+        for (Node node : path) {
+            assertEquals(15, node.getY());
+        }
+
+        //a vertical band of expensive terrain is passed over the white row at the bottom
+        aStar = new AStar(new NodeGrid(createBandImage(55), TerrainCosts.grayscale()));
+        path = aStar.findPath(0, 15, 29, 15);
+
+        for (Node node : path) {
+            assertTrue(node.getCost() == 1);
+        }
+        assertTrue(path.stream().anyMatch(node -> node.getY() == 29));
+    }
+
+    @Test
+    void findPathWithBucketQueueOnWeightedGrid() {
+        NodeGrid nodeGrid = new NodeGrid(createBandImage(200), TerrainCosts.grayscale());
+
+        List<Node> expected = new AStar(nodeGrid).findPath(0, 0, 29, 20);
+        List<Node> path = new AStar(nodeGrid, false, OpenListType.BUCKET_QUEUE).findPath(0, 0, 29, 20);
+
+        assertEquals(pathCost(nodeGrid, expected), pathCost(nodeGrid, path));
+    }
+
+    @Test
+    void findPathHashDistributedOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        List<Node> expected = new AStar(nodeGrid).findPath(1100, 50, 1000, 2700);
+
+        AStar aStar = new AStar(nodeGrid, true);
+        aStar.setThreads(4);
+        aStar.setAlgorithm(SearchAlgorithm.HASH_DISTRIBUTED);
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+
+        assertEquals(pathCost(nodeGrid, expected), pathCost(nodeGrid, path));
+        assertEquals(nodeGrid.getNode(1100, 50), path.get(0));
+        assertEquals(nodeGrid.getNode(1000, 2700), path.get(path.size() - 1));
+    }
+
+    @Test
+    void findPathHashDistributedOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+
+        AStar aStar = new AStar(nodeGrid, true);
+        aStar.setThreads(3);
+        aStar.setAlgorithm(SearchAlgorithm.HASH_DISTRIBUTED);
+
+        assertTrue(aStar.findPath(0, 0, 19, 19) == null);
+        assertEquals(20, aStar.findPath(0, 19, 19, 19).size());
+    }
+
+    @Test
+    void findPathHashDistributedWithSmallExecutor() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        List<Node> expected = new AStar(nodeGrid).findPath(1100, 50, 1000, 2700);
+
+        //the executor runs one worker at a time, the calling thread has to run the others
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            AStar aStar = new AStar(nodeGrid, true, OpenListType.DARY_HEAP, pool);
+            aStar.setThreads(4);
+            aStar.setAlgorithm(SearchAlgorithm.HASH_DISTRIBUTED);
+
+            assertEquals(pathCost(nodeGrid, expected), pathCost(nodeGrid, aStar.findPath(1100, 50, 1000, 2700)));
+        } finally {
+            pool.shutdown();
+        }
+
+        //an executor that never runs the workers
+        AStar aStar = new AStar(nodeGrid, true, OpenListType.DARY_HEAP, runnable -> {});
+        aStar.setThreads(4);
+        aStar.setAlgorithm(SearchAlgorithm.HASH_DISTRIBUTED);
+
+        assertEquals(pathCost(nodeGrid, expected), pathCost(nodeGrid, aStar.findPath(1100, 50, 1000, 2700)));
+    }
+
+    @Test
+    void findDistancesOnMidLineGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/midLine.png")));
+        AStar aStar = new AStar(nodeGrid);
+
+        List<Node> points = new ArrayList<>();
+        points.add(nodeGrid.getNode(0, 0));
+        points.add(nodeGrid.getNode(19, 19));
+        points.add(nodeGrid.getNode(0, 19));
+        points.add(nodeGrid.getNode(0, 0));
+
+        DistanceMatrix matrix = aStar.findDistances(points);
+
+        assertEquals(4, matrix.size());
+        for (int from = 0; from < 4; from++) {
+            for (int to = 0; to < 4; to++) {
+                Node start = points.get(from);
+                Node end = points.get(to);
+                List<Node> path = aStar.findPath(start.getX(), start.getY(), end.getX(), end.getY());
+
+                assertEquals(pathCost(nodeGrid, path) / 1000.0, matrix.getDistance(from, to), 1e-9);
+                assertEquals(matrix.getDistance(from, to), matrix.toArray()[from * 4 + to]);
+            }
+        }
+        assertEquals(0, matrix.getDistance(0, 3));
+        assertEquals(pathCost(nodeGrid, matrix.getPath(1, 2)) / 1000.0, matrix.getDistance(1, 2), 1e-9);
+    }
+
+    @Test
+    void findDistancesOnPrisonGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png")));
+        AStar aStar = new AStar(nodeGrid);
+
+        List<Node> points = new ArrayList<>();
+        points.add(nodeGrid.getNode(0, 0));
+        points.add(nodeGrid.getNode(19, 19));
+
+        DistanceMatrix matrix = aStar.findDistances(points);
+
+        assertFalse(matrix.isReachable(0, 1));
+        assertEquals(Double.POSITIVE_INFINITY, matrix.getDistance(1, 0));
+        assertTrue(matrix.getPath(0, 1) == null);
+    }
+
+    @Test
+    void findPathMultiThreadOnWeightedGrid() {
+        NodeGrid nodeGrid = new NodeGrid(createBandImage(100), TerrainCosts.grayscale());
+
+        AStar serial = new AStar(nodeGrid);
+        AStar parallel = new AStar(nodeGrid, true);
+
+        //the bidirectional search finds a shortest path
+        for (int y = 0; y < 30; y += 3) {
+            assertEquals(pathCost(nodeGrid, serial.findPath(0, y, 29, 29 - y)), pathCost(nodeGrid, parallel.findPath(0, y, 29, 29 - y)));
+        }
+    }
+
+    private static long pathCost(NodeGrid nodeGrid, List<Node> path) {
+        long cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            cost += nodeGrid.getMoveCost(path.get(i - 1).getIndex(), path.get(i).getIndex());
+        }
+        return cost;
+    }
+
+    @Test
+    void jumpPointSearchOnWeightedGrid() {
+        AStar aStar = new AStar(new NodeGrid(createBandImage(128), TerrainCosts.grayscale()));
+
+        assertThrows(IllegalArgumentException.class, () -> aStar.setAlgorithm(SearchAlgorithm.JUMP_POINT_SEARCH));
+    }
+
+    @Test
+    void findPathWithPathCacheOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+        AStar aStar = new AStar(nodeGrid);
+        PathCache cache = new PathCache(nodeGrid, 100000);
+        aStar.setPathCache(cache);
+
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        assertEquals(path, aStar.findPath(1100, 50, 1000, 2700));
+        assertEquals(1, cache.getHits());
+
+        //both points lie on the cached path, the subpath is returned in the direction of the query
+        Node a = path.get(path.size() / 4);
+        Node b = path.get(path.size() / 2);
+        List<Node> subpath = aStar.findPath(b.getX(), b.getY(), a.getX(), a.getY());
+        assertEquals(1, cache.getSubpathHits());
+        assertEquals(b, subpath.get(0));
+        assertEquals(a, subpath.get(subpath.size() - 1));
+
+        AStar uncached = new AStar(nodeGrid);
+        assertEquals(pathCost(nodeGrid, uncached.findPath(b.getX(), b.getY(), a.getX(), a.getY())), pathCost(nodeGrid, subpath));
+    }
+
+    @Test
+    void pathCacheEvictsLeastRecentlyUsedPath() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        AStar aStar = new AStar(nodeGrid);
+        //room for two paths of 20 cells
+        PathCache cache = new PathCache(nodeGrid, 40);
+        aStar.setPathCache(cache);
+
+        aStar.findPath(0, 0, 19, 0);
+        aStar.findPath(0, 1, 19, 1);
+        aStar.findPath(0, 0, 19, 0);
+        aStar.findPath(0, 2, 19, 2);
+
+        assertEquals(2, cache.size());
+        assertEquals(40, cache.getCells());
+        assertEquals(1, cache.getHits());
+
+        //the path in row 1 was used least recently
+        aStar.findPath(0, 1, 19, 1);
+        assertEquals(4, cache.getMisses());
+
+        assertThrows(IllegalArgumentException.class, () -> aStar.setPathCache(new PathCache(new NodeGrid(createBandImage(100)), 10)));
+    }
+
+    @Test
+    void pathCacheSkipsInexactOpenList() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        PathCache cache = new PathCache(nodeGrid, 1000);
+
+        AStar coarse = new AStar(nodeGrid, false, OpenListType.COARSE_BUCKET_QUEUE);
+        coarse.setPathCache(cache);
+        coarse.findPath(0, 0, 19, 10);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+
+        AStar exact = new AStar(nodeGrid, false, OpenListType.BUCKET_QUEUE);
+        exact.setPathCache(cache);
+        exact.findPath(0, 0, 19, 10);
+        assertEquals(1, cache.size());
+
+        //the coarse search does not read the cache either
+        coarse.findPath(0, 0, 19, 10);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void findPathAltOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        AStar alt = new AStar(nodeGrid);
+        alt.setAlgorithm(SearchAlgorithm.ALT);
+        alt.setLandmarks(new Landmarks(nodeGrid, 4));
+
+        //the landmark heuristic is admissible, so the path is a shortest one
+        assertEquals(pathCost(nodeGrid, aStar.findPath(1100, 50, 1000, 2700)), pathCost(nodeGrid, alt.findPath(1100, 50, 1000, 2700)));
+        assertEquals(pathCost(nodeGrid, aStar.findPath(1000, 2700, 1100, 50)), pathCost(nodeGrid, alt.findPath(1000, 2700, 1100, 50)));
+    }
+
+    @Test
+    void findPathAltWithSavedLandmarks(@TempDir Path directory) throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(createBandImage(50), TerrainCosts.grayscale());
+        Landmarks landmarks = new Landmarks(nodeGrid, 6);
+        assertEquals(6, landmarks.getCount());
+
+        Path file = directory.resolve("band.landmarks");
+        landmarks.save(file);
+        Landmarks opened = Landmarks.open(nodeGrid, file);
+        assertEquals(landmarks.getLandmark(3), opened.getLandmark(3));
+
+        AStar aStar = new AStar(nodeGrid);
+        AStar alt = new AStar(nodeGrid);
+        alt.setAlgorithm(SearchAlgorithm.ALT);
+        alt.setLandmarks(opened);
+        for (int y = 0; y < 30; y += 3) {
+            assertEquals(pathCost(nodeGrid, aStar.findPath(0, y, 29, 29 - y)), pathCost(nodeGrid, alt.findPath(0, y, 29, 29 - y)));
+        }
+
+        //a changed grid makes the landmarks outdated, they are computed again
+        nodeGrid.setTraversable(15, 15, false);
+        assertTrue(opened.isOutdated());
+        assertEquals(pathCost(nodeGrid, aStar.findPath(0, 15, 29, 15)), pathCost(nodeGrid, alt.findPath(0, 15, 29, 15)));
+        assertFalse(alt.getLandmarks().isOutdated());
+
+        assertThrows(IOException.class, () -> Landmarks.open(new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png"))), file));
+    }
+
+    @Test
+    void flowFieldParallel() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        FlowField expected = new AStar(nodeGrid).getFlowField(1000, 2700);
+
+        AStar aStar = new AStar(nodeGrid, true);
+        aStar.setThreads(4);
+        FlowField flowField = aStar.getFlowField(1000, 2700);
+
+        //the parallel search can choose other steps of the same length
+        for (int y = 0; y < nodeGrid.getHeight(); y += 37) {
+            for (int x = 0; x < nodeGrid.getWidth(); x += 37) {
+                assertEquals(expected.getDistance(x, y), flowField.getDistance(x, y), 1e-3);
+            }
+        }
+        List<Node> path = flowField.getPath(1100, 50);
+        assertEquals(pathCost(nodeGrid, new AStar(nodeGrid).findPath(1100, 50, 1000, 2700)), pathCost(nodeGrid, path));
+    }
+
+    @Test
+    void flowFieldLookupDuringComputation() throws Exception {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        AtomicBoolean block = new AtomicBoolean();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        //an executor that holds the computation of a field, its tasks are run by the calling thread of the search
+        AStar aStar = new AStar(nodeGrid, true, OpenListType.DARY_HEAP, runnable -> {
+            if (!block.get()) return;
+            computing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        aStar.setThreads(2);
+        FlowField cached = aStar.getFlowField(0, 0);
+
+        block.set(true);
+        CompletableFuture<FlowField> other = CompletableFuture.supplyAsync(() -> aStar.getFlowField(99, 99));
+        assertTrue(computing.await(1, TimeUnit.MINUTES));
+
+        //the cached field is returned while the other one is computed
+        assertSame(cached, CompletableFuture.supplyAsync(() -> aStar.getFlowField(0, 0)).get(1, TimeUnit.MINUTES));
+        assertFalse(other.isDone());
+
+        release.countDown();
+        assertEquals(nodeGrid.getNode(99, 99), other.get(1, TimeUnit.MINUTES).getGoal());
+    }
+
+    @Test
+    void flowFieldOnWeightedGrid() {
+        NodeGrid nodeGrid = new NodeGrid(createBandImage(100), TerrainCosts.grayscale());
+        AStar aStar = new AStar(nodeGrid);
+
+        FlowField flowField = aStar.getFlowField(29, 0);
+        assertTrue(flowField == aStar.getFlowField(29, 0));
+        assertEquals(nodeGrid.getNode(29, 0), flowField.getGoal());
+        assertTrue(flowField.getNext(29, 0) == null);
+
+        //every start reads a shortest path
+        for (int y = 0; y < 30; y += 3) {
+            List<Node> path = flowField.getPath(0, y);
+            assertEquals(nodeGrid.getNode(0, y), path.get(0));
+            assertEquals(nodeGrid.getNode(29, 0), path.get(path.size() - 1));
+            assertEquals(path.get(1), flowField.getNext(0, y));
+
+            long cost = pathCost(nodeGrid, aStar.findPath(0, y, 29, 0));
+            assertEquals(cost, pathCost(nodeGrid, path));
+            assertEquals((double) cost / 1000, flowField.getDistance(0, y), 1e-3);
+        }
+
+        //a wall splits the grid, the field is computed again
+        for (int y = 0; y < 30; y++) {
+            nodeGrid.setTraversable(5, y, false);
+        }
+        assertTrue(flowField.isOutdated());
+        FlowField updated = aStar.getFlowField(29, 0);
+        assertFalse(updated.isReachable(0, 0));
+        assertTrue(updated.getPath(0, 0) == null);
+        assertEquals(Float.POSITIVE_INFINITY, updated.getDistance(0, 0));
+    }
+
+    @Test
+    void findPathAsyncWithDeadline() throws Exception {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PathQuery query = new PathQuery(1100, 50, 1000, 2700);
+
+        try {
+            //the grid allocates its first search context and builds its component index on the first query
+            assertEquals(PathResult.Status.FOUND, new AStar(nodeGrid).findPathAsync(new PathQuery(1100, 50, 1101, 50), 1, TimeUnit.MINUTES, executor).get().getStatus());
+
+            for (boolean parallel : new boolean[]{false, true}) {
+                AStar aStar = new AStar(nodeGrid, parallel);
+
+                long cost = pathCost(nodeGrid, aStar.findPath(1100, 50, 1000, 2700));
+
+                //the deadline passes before the search can do anything, a partial path leads from the start over neighbouring nodes
+                PathResult result = aStar.findPathAsync(query, 1, TimeUnit.NANOSECONDS, executor).get();
+                assertEquals(PathResult.Status.TIMED_OUT, result.getStatus());
+                assertPartialPath(nodeGrid, result.getPath());
+
+                //a fast machine might finish before a short deadline, a stopped search has a partial path
+                result = aStar.findPathAsync(query, 5, TimeUnit.MILLISECONDS, executor).get();
+                if (result.getStatus() == PathResult.Status.TIMED_OUT) assertPartialPath(nodeGrid, result.getPath());
+                else assertEquals(cost, pathCost(nodeGrid, result.getPath()));
+
+                result = aStar.findPathAsync(query, Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor).get();
+                assertEquals(PathResult.Status.FOUND, result.getStatus());
+                assertEquals(cost, pathCost(nodeGrid, result.getPath()));
+            }
+
+            AStar aStar = new AStar(nodeGrid);
+            assertEquals(PathResult.Status.INVALID_COORDINATES, aStar.findPathAsync(new PathQuery(-1, 0, 0, 0), 1, TimeUnit.SECONDS).get().getStatus());
+            assertEquals(PathResult.Status.TIMED_OUT, aStar.findPathAsync(query, 0, TimeUnit.SECONDS).get().getStatus());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void findPathAsyncTimesOutWhileWaiting() throws Exception {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        AStar aStar = new AStar(nodeGrid);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        try {
+            //the only thread of the executor is busy, the query is completed at its deadline without being searched
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            PathResult result = aStar.findPathAsync(new PathQuery(0, 0, 99, 99), 10, TimeUnit.MILLISECONDS, executor).get(1, TimeUnit.MINUTES);
+            assertEquals(PathResult.Status.TIMED_OUT, result.getStatus());
+            assertTrue(result.getPath() == null);
+        } finally {
+            blocked.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void preparationStopsAtDeadline() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        SearchControl expired = new SearchControl(0);
+
+        new Landmarks(nodeGrid, 4, expired);
+        assertTrue(expired.isStopped());
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+        nodeGrid.setTraversable(55, 50, false);
+        assertFalse(graph.update(expired));
+        assertTrue(graph.isOutdated());
+        assertEquals(4, graph.getEntranceCount(5, 5));
+
+        assertTrue(graph.update(new SearchControl(Long.MAX_VALUE)));
+        assertFalse(graph.isOutdated());
+        assertEquals(6, graph.getEntranceCount(5, 5));
+    }
+
+    @Test
+    void findPathAsyncCancelled() throws Exception {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+        AStar aStar = new AStar(nodeGrid);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PathQuery query = new PathQuery(1100, 50, 1000, 2700);
+        PathQuery shortQuery = new PathQuery(1100, 50, 1101, 50);
+
+        try {
+            long expanded = aStar.findPathAsync(query, Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor).get().getStats().getExpanded();
+
+            List<SearchStats> finished = Collections.synchronizedList(new ArrayList<>());
+            aStar.setSearchListener(finished::add);
+
+            CompletableFuture<PathResult> future = aStar.findPathAsync(query, Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor);
+            Thread.sleep(20);
+            future.cancel(true);
+            assertTrue(future.isCancelled());
+
+            //the next query runs on the same thread, so the cancelled search is finished when it is answered
+            assertEquals(PathResult.Status.FOUND, aStar.findPathAsync(shortQuery, 1, TimeUnit.MINUTES, executor).get().getStatus());
+
+            //the cancelled search stopped early, unless it was already finished or never started
+            SearchStats stats = finished.get(0);
+            if (finished.size() == 2) {
+                assertEquals(query.getEndX(), stats.getEnd().getX());
+                if (stats.getStatus() == PathResult.Status.TIMED_OUT) assertTrue(stats.getExpanded() < expanded);
+                else assertEquals(PathResult.Status.FOUND, stats.getStatus());
+            } else {
+                assertEquals(shortQuery.getEndX(), stats.getEnd().getX());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertPartialPath(NodeGrid nodeGrid, List<Node> partial) {
+        //the query can time out before its search started
+        if (partial == null) return;
+
+        assertEquals(nodeGrid.getNode(1100, 50), partial.get(0));
+        for (int i = 1; i < partial.size(); i++) {
+            assertTrue(nodeGrid.getMoveCost(partial.get(i - 1).getIndex(), partial.get(i).getIndex()) > 0);
+        }
+    }
+
+    @Test
+    void searchStatsAndMetrics() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        //a wall with a closed room in the corner
+        for (int x = 0; x < 90; x++) {
+            nodeGrid.setTraversable(x, 50, false);
+        }
+        nodeGrid.setTraversable(1, 0, false);
+        nodeGrid.setTraversable(1, 1, false);
+        nodeGrid.setTraversable(0, 1, false);
+
+        AStar aStar = new AStar(nodeGrid);
+        SearchMetrics metrics = new SearchMetrics();
+        aStar.setSearchListener(metrics);
+
+        for (SearchAlgorithm algorithm : new SearchAlgorithm[]{SearchAlgorithm.ASTAR, SearchAlgorithm.JUMP_POINT_SEARCH, SearchAlgorithm.HASH_DISTRIBUTED}) {
+            aStar.setAlgorithm(algorithm);
+            SearchStats stats = aStar.findPaths(Collections.singletonList(new PathQuery(50, 99, 50, 0))).get(0).getStats();
+
+            assertEquals(algorithm, stats.getAlgorithm());
+            assertEquals(PathResult.Status.FOUND, stats.getStatus());
+            assertEquals(1, stats.getThreads());
+            assertEquals(nodeGrid.getNode(50, 0), stats.getMeetingPoint());
+            assertTrue(stats.getExpanded() > 0 && stats.getGenerated() >= stats.getExpanded());
+            assertTrue(stats.getPushes() >= stats.getPops() && stats.getPops() > 0);
+            assertTrue(stats.getPeakOpenListSize() > 0);
+            assertTrue(stats.getNanos(SearchStats.Phase.SEARCH) > 0);
+        }
+
+        //both directions of the parallel search add their work
+        List<SearchStats> reported = new ArrayList<>();
+        AStar parallel = new AStar(nodeGrid, true);
+        parallel.setSearchListener(reported::add);
+        parallel.findPath(50, 99, 50, 0);
+        assertEquals(2, reported.get(0).getThreads());
+        assertTrue(reported.get(0).getExpanded() > 0 && reported.get(0).getMeetingPoint() != null);
+        assertEquals(3, metrics.getSearches());
+
+        //answered without a search
+        aStar.setAlgorithm(SearchAlgorithm.ASTAR);
+        aStar.setPathCache(new PathCache(nodeGrid, 10000));
+        aStar.findPath(50, 99, 50, 0);
+        SearchStats cached = aStar.findPaths(Collections.singletonList(new PathQuery(50, 99, 50, 0))).get(0).getStats();
+        assertTrue(cached.isCached());
+        assertEquals(0, cached.getThreads());
+        assertEquals(0, cached.getExpanded());
+
+        SearchStats unreachable = aStar.findPaths(Collections.singletonList(new PathQuery(0, 0, 50, 0))).get(0).getStats();
+        assertEquals(PathResult.Status.UNREACHABLE, unreachable.getStatus());
+        assertEquals(0, unreachable.getThreads());
+
+        assertEquals(6, metrics.getSearches());
+        assertEquals(5, metrics.getSearches(PathResult.Status.FOUND));
+        assertEquals(1, metrics.getSearches(PathResult.Status.UNREACHABLE));
+        assertEquals(1, metrics.getCachedSearches());
+        assertEquals(6, metrics.getTotalNanos().getCount());
+        assertTrue(metrics.getExpanded().getMax() >= metrics.getExpanded().getPercentile(50));
+    }
+
+    @Test
+    void metricsHistogramPercentiles() {
+        SearchMetrics.Histogram histogram = new SearchMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(50000.5, histogram.getMean(), 1e-9);
+        assertEquals(100000, histogram.getMax());
+        assertEquals(100000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+
+        //the buckets are at most 12.5% wide
+        for (double percentile : new double[]{1, 10, 50, 90, 99, 99.9}) {
+            long exact = (long) (percentile * 1000);
+            long estimate = histogram.getPercentile(percentile);
+            assertTrue(estimate >= exact && estimate <= exact * 1.125, percentile + ": " + estimate);
+        }
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    @Test
+    void findPathIntoBufferOnLabyrinth() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        PathBuffer buffer = new PathBuffer(4);
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+
+        assertTrue(aStar.findPath(1100, 50, 1000, 2700, buffer));
+        assertEquals(path.size(), buffer.length());
+        for (int node = 0; node < path.size(); node++) {
+            assertEquals(path.get(node).getX(), buffer.getX(node));
+            assertEquals(path.get(node).getY(), buffer.getY(node));
+        }
+        assertEquals(path, buffer.toNodes());
+
+        //both halves of a parallel search
+        NodeGrid onePathGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+        AStar parallel = new AStar(onePathGrid, true);
+        assertTrue(parallel.findPath(0, 0, 19, 19, buffer));
+        assertEquals(parallel.findPath(0, 0, 19, 19), buffer.toNodes());
+
+        //the buffer is reused and grows only when the path is longer than its capacity
+        int[] cells = buffer.getCells();
+        assertTrue(aStar.findPath(1100, 50, 1101, 51, buffer));
+        assertEquals(2, buffer.length());
+        assertTrue(cells == buffer.getCells());
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.getCell(2));
+    }
+
+    @Test
+    void findPathIntoBufferWithListener() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/labpng.png")));
+        AStar aStar = new AStar(nodeGrid);
+        PathBuffer buffer = new PathBuffer();
+
+        //the lists of two searches dont share the buffer of the search context
+        List<Node> path = aStar.findPath(1100, 50, 1000, 2700);
+        List<Node> shortPath = aStar.findPath(1100, 50, 1101, 51);
+        assertEquals(2, shortPath.size());
+        assertEquals(nodeGrid.getNode(1000, 2700), path.get(path.size() - 1));
+
+        //the statistics are only collected for a listener
+        List<SearchStats> finished = new ArrayList<>();
+        aStar.setSearchListener(finished::add);
+        assertTrue(aStar.findPath(1100, 50, 1000, 2700, buffer));
+        assertEquals(1, finished.size());
+        assertEquals(PathResult.Status.FOUND, finished.get(0).getStatus());
+        assertEquals(path.size(), finished.get(0).getPathLength());
+        assertEquals(path, buffer.toNodes());
+
+        aStar.setSearchListener(null);
+        assertTrue(aStar.findPath(1100, 50, 1101, 51, buffer));
+        assertEquals(1, finished.size());
+        assertEquals(shortPath, buffer.toNodes());
+    }
+
+    @Test
+    void findPathIntoBufferOnUnreachableGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        nodeGrid.setTraversable(1, 0, false);
+        nodeGrid.setTraversable(1, 1, false);
+        nodeGrid.setTraversable(0, 1, false);
+
+        AStar aStar = new AStar(nodeGrid);
+        PathBuffer buffer = new PathBuffer();
+
+        assertTrue(aStar.findPath(19, 19, 5, 5, buffer));
+        assertFalse(aStar.findPath(0, 0, 5, 5, buffer));
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getEncodedLength());
+
+        assertThrows(NullPointerException.class, () -> aStar.findPath(0, 0, 5, 5, null));
+        assertThrows(IllegalArgumentException.class, () -> aStar.findPath(0, 0, 100, 5, buffer));
+    }
+
+    @Test
+    void encodeAndDecodePathDirections() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/onePath.png")));
+
+        AStar aStar = new AStar(nodeGrid);
+        PathBuffer buffer = new PathBuffer();
+        assertTrue(aStar.findPath(0, 0, 19, 19, buffer));
+
+        //18 steps to the right, one diagonal step and 18 steps down
+        ByteBuffer encoded = ByteBuffer.allocate(16);
+        assertEquals(3, buffer.encodeDirections(encoded));
+        assertEquals(3, encoded.position());
+        assertEquals(4 << 5 | 17, encoded.get(0) & 0xFF);
+        assertEquals(7 << 5, encoded.get(1) & 0xFF);
+        assertEquals(6 << 5 | 17, encoded.get(2) & 0xFF);
+
+        PathBuffer decoded = new PathBuffer(0);
+        encoded.flip();
+        decoded.decodeDirections(nodeGrid, 0, 0, encoded);
+        assertArrayEquals(buffer.toArray(), decoded.toArray());
+
+        //runs are split after 32 steps
+        nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        aStar = new AStar(nodeGrid);
+        assertTrue(aStar.findPath(0, 0, 0, 99, buffer));
+        assertEquals(4, buffer.getEncodedLength());
+        assertThrows(BufferOverflowException.class, () -> buffer.encodeDirections(ByteBuffer.allocate(3)));
+
+        encoded.clear();
+        buffer.encodeDirections(encoded);
+        encoded.flip();
+        decoded.decodeDirections(nodeGrid, 0, 0, encoded);
+        assertArrayEquals(buffer.toArray(), decoded.toArray());
+
+        encoded.rewind();
+        NodeGrid grid = nodeGrid;
+        assertThrows(IllegalArgumentException.class, () -> decoded.decodeDirections(grid, 0, 10, encoded));
+    }
+
+    /**
+     * 30x30 white image with a band of the gray value in the columns 10 to 19, the last row stays white
+     */
+    private static BufferedImage createBandImage(int gray) {
+        BufferedImage image = new BufferedImage(30, 30, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 30; x++) {
+                int value = x >= 10 && x < 20 && y < 29 ? gray : 255;
+                image.getRaster().setSample(x, y, 0, value);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,96 @@
+package xyz.GPSforLEGENDS;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DStarLiteTest {
+
+    @Test
+    void replanAfterBlockedCell() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        //a wall that the search has to go around
+        for(int x = 0; x < 90; x++){
+            nodeGrid.setTraversable(x, 50, false);
+        }
+
+        DStarLite planner = new DStarLite(nodeGrid, 50, 99, 50, 0);
+        AStar aStar = new AStar(nodeGrid);
+
+        List<Node> path = planner.findPath();
+        int initialExpansions = planner.getExpansions();
+        assertEquals(pathCost(nodeGrid, aStar.findPath(50, 99, 50, 0)), pathCost(nodeGrid, path));
+
+        //block a cell on the path close to the goal
+        Node blocked = path.get(path.size() - 10);
+        planner.setTraversable(blocked.getX(), blocked.getY(), false);
+        path = planner.findPath();
+
+        assertTrue(!path.contains(blocked));
+        assertEquals(pathCost(nodeGrid, aStar.findPath(50, 99, 50, 0)), pathCost(nodeGrid, path));
+        assertTrue(planner.getExpansions() < initialExpansions / 4);
+    }
+
+    @Test
+    void replanWhileMoving() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        DStarLite planner = new DStarLite(nodeGrid, 10, 10, 90, 90);
+        AStar aStar = new AStar(nodeGrid);
+
+        List<Node> path = planner.findPath();
+        for(int step = 0; step < 10; step++){
+            Node next = path.get(5);
+            planner.moveStart(next.getX(), next.getY());
+
+            //a wall grows in front of the agent
+            for(int x = 30; x < 30 + step * 5; x++){
+                planner.setTraversable(x, 40 + step, false);
+            }
+
+            path = planner.findPath();
+            assertEquals(next, path.get(0));
+            assertEquals(pathCost(nodeGrid, aStar.findPath(next.getX(), next.getY(), 90, 90)), pathCost(nodeGrid, path));
+        }
+
+        //open the walls again
+        for(int step = 0; step < 10; step++){
+            for(int x = 30; x < 30 + step * 5; x++){
+                planner.setTraversable(x, 40 + step, true);
+            }
+        }
+        Node start = planner.findPath().get(0);
+        assertEquals(pathCost(nodeGrid, aStar.findPath(start.getX(), start.getY(), 90, 90)), pathCost(nodeGrid, planner.findPath()));
+    }
+
+    @Test
+    void replanAfterChangeOfTheGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        DStarLite planner = new DStarLite(nodeGrid, 50, 0, 50, 99);
+        AStar aStar = new AStar(nodeGrid);
+
+        assertEquals(pathCost(nodeGrid, aStar.findPath(50, 0, 50, 99)), pathCost(nodeGrid, planner.findPath()));
+
+        //a wall across the grid, changed directly on the grid
+        for(int x = 0; x < 100; x++){
+            nodeGrid.setTraversable(x, 50, false);
+        }
+        assertNull(planner.findPath());
+
+        planner.setTraversable(0, 50, true);
+        assertEquals(pathCost(nodeGrid, aStar.findPath(50, 0, 50, 99)), pathCost(nodeGrid, planner.findPath()));
+    }
+
+    private static long pathCost(NodeGrid nodeGrid, List<Node> path) {
+        long cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            cost += nodeGrid.getMoveCost(path.get(i - 1).getIndex(), path.get(i).getIndex());
+        }
+        return cost;
+    }
+}
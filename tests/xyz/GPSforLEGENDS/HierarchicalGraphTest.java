@@ -0,0 +1,194 @@
+package xyz.GPSforLEGENDS;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalGraphTest {
+
+    @Test
+    void testClusterPartition() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/basic.png")));
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 50);
+
+        //271x192, the last clusters are smaller
+        assertEquals(6, graph.getClustersX());
+        assertEquals(4, graph.getClustersY());
+    }
+
+    @Test
+    void testEntrancesOnClearGrid() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+
+        //corner cluster: two borders with a transition at both ends, they share the corner cell
+        assertEquals(3, graph.getEntranceCount(0, 0));
+        //inner cluster: four borders with two transitions each, all of them in the corners
+        assertEquals(4, graph.getEntranceCount(5, 5));
+    }
+
+    @Test
+    void testRebuildCluster() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/midLine.png")));
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 5);
+
+        int[] entrances = new int[graph.getClustersX() * graph.getClustersY()];
+        for (int y = 0; y < graph.getClustersY(); y++) {
+            for (int x = 0; x < graph.getClustersX(); x++) {
+                entrances[y * graph.getClustersX() + x] = graph.getEntranceCount(x, y);
+            }
+        }
+
+        graph.rebuildCluster(1, 1);
+
+        for (int y = 0; y < graph.getClustersY(); y++) {
+            for (int x = 0; x < graph.getClustersX(); x++) {
+                assertEquals(entrances[y * graph.getClustersX() + x], graph.getEntranceCount(x, y));
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> graph.rebuildCluster(4, 0));
+    }
+
+    @Test
+    void testRebuildClusterAfterChange() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+        assertEquals(4, graph.getEntranceCount(5, 5));
+        assertEquals(4, graph.getEntranceCount(5, 4));
+
+        //a blocked cell splits the straight entrance between both clusters in two
+        nodeGrid.setTraversable(55, 50, false);
+        assertEquals(4, graph.getEntranceCount(5, 5));
+        graph.rebuildCluster(5, 5);
+        assertEquals(6, graph.getEntranceCount(5, 5));
+        assertEquals(6, graph.getEntranceCount(5, 4));
+    }
+
+    @Test
+    void testPathAfterRebuild() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        //a wall across the grid with a gap at x = 25
+        for (int x = 0; x < 100; x++) {
+            if (x != 25) nodeGrid.setTraversable(x, 50, false);
+        }
+
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setHierarchicalGraph(graph);
+        aStar.setAlgorithm(SearchAlgorithm.HIERARCHICAL);
+
+        List<Node> path = aStar.findPath(5, 40, 5, 60);
+        assertTrue(path.contains(nodeGrid.getNode(25, 50)));
+
+        //the gap moves to x = 75
+        nodeGrid.setTraversable(25, 50, false);
+        nodeGrid.setTraversable(75, 50, true);
+        graph.rebuildCluster(2, 5);
+        graph.rebuildCluster(7, 5);
+
+        path = aStar.findPath(5, 40, 5, 60);
+        assertEquals(nodeGrid.getNode(5, 40), path.get(0));
+        assertEquals(nodeGrid.getNode(5, 60), path.get(path.size() - 1));
+        assertTrue(path.contains(nodeGrid.getNode(75, 50)));
+        for (int i = 0; i < path.size(); i++) {
+            assertTrue(path.get(i).isTraversable());
+            if (i > 0) assertTrue(Math.abs(path.get(i).getX() - path.get(i - 1).getX()) <= 1 && Math.abs(path.get(i).getY() - path.get(i - 1).getY()) <= 1);
+        }
+
+        //a little longer than the shortest path at most
+        List<Node> shortest = new AStar(nodeGrid).findPath(5, 40, 5, 60);
+        assertTrue(path.size() >= shortest.size() && path.size() <= shortest.size() * 1.1);
+    }
+
+    @Test
+    void testPathAfterSetTraversable() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        //a wall down the grid with a gap at y = 20
+        for (int y = 0; y < 100; y++) {
+            if (y != 20) nodeGrid.setTraversable(50, y, false);
+        }
+
+        AStar aStar = new AStar(nodeGrid);
+        aStar.setAlgorithm(SearchAlgorithm.HIERARCHICAL);
+        assertTrue(aStar.findPath(5, 50, 80, 50).contains(nodeGrid.getNode(50, 20)));
+
+        //the gap moves to y = 80, the graph is updated by the next search
+        nodeGrid.setTraversable(50, 20, false);
+        nodeGrid.setTraversable(50, 80, true);
+        assertFalse(aStar.getHierarchicalGraph().isOutdated());
+
+        List<Node> path = aStar.findPath(5, 50, 80, 50);
+        assertEquals(nodeGrid.getNode(5, 50), path.get(0));
+        assertEquals(nodeGrid.getNode(80, 50), path.get(path.size() - 1));
+        assertTrue(path.contains(nodeGrid.getNode(50, 80)));
+        for (int i = 0; i < path.size(); i++) {
+            assertTrue(path.get(i).isTraversable());
+            if (i > 0) assertTrue(Math.abs(path.get(i).getX() - path.get(i - 1).getX()) <= 1 && Math.abs(path.get(i).getY() - path.get(i - 1).getY()) <= 1);
+        }
+    }
+
+    @Test
+    void testUpdateRebuildsChangedClusters() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+        assertFalse(graph.isOutdated());
+
+        //a blocked cell on the border splits the straight entrances of both clusters
+        nodeGrid.setTraversable(55, 50, false);
+        assertTrue(graph.isOutdated());
+        assertEquals(4, graph.getEntranceCount(5, 5));
+
+        graph.update();
+        assertFalse(graph.isOutdated());
+        assertEquals(6, graph.getEntranceCount(5, 5));
+        assertEquals(6, graph.getEntranceCount(5, 4));
+        assertEquals(4, graph.getEntranceCount(2, 2));
+    }
+
+    @Test
+    void testUpdateAfterManyChanges() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+
+        //more changes than the change log of the grid holds, every cluster is rebuilt
+        for (int i = 0; i < NodeGrid.CHANGE_LOG_SIZE; i++) {
+            nodeGrid.setTraversable(0, 0, i % 2 == 1);
+        }
+        nodeGrid.setTraversable(55, 50, false);
+
+        graph.update();
+        assertFalse(graph.isOutdated());
+        assertEquals(6, graph.getEntranceCount(5, 5));
+        assertEquals(3, graph.getEntranceCount(0, 0));
+    }
+
+    @Test
+    void testOutdatedGraphFindsNoBrokenPath() throws IOException {
+        NodeGrid nodeGrid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        for (int y = 0; y < 100; y++) {
+            if (y != 20) nodeGrid.setTraversable(50, y, false);
+        }
+        HierarchicalGraph graph = new HierarchicalGraph(nodeGrid, 10);
+
+        //the only gap is closed and the graph is searched without an update
+        nodeGrid.setTraversable(50, 20, false);
+
+        SearchContext context = nodeGrid.acquireSearchContext();
+        try {
+            context.reset();
+            graph.search(context, nodeGrid.index(5, 50), nodeGrid.index(80, 50), OpenListType.DARY_HEAP);
+            assertEquals(-1, context.getMeetingPoint());
+        } finally {
+            nodeGrid.releaseSearchContext(context);
+        }
+    }
+}
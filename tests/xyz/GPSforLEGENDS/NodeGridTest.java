@@ -2,9 +2,22 @@ package xyz.GPSforLEGENDS;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -152,4 +165,356 @@ class NodeGridTest {
         assertTrue(n.getNeighbours().contains(bot));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSaveAndOpen(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("basic.grid");
+        nodeGrid.save(file);
+
+        NodeGrid opened = NodeGrid.open(file);
+
+        assertEquals(nodeGrid.getWidth(), opened.getWidth());
+        assertEquals(nodeGrid.getHeight(), opened.getHeight());
+
+        for(int row = 0; row < nodeGrid.getHeight(); row++){
+            for(int column = 0; column < nodeGrid.getWidth(); column++){
+                int index = nodeGrid.index(column, row);
+
+                assertEquals(nodeGrid.isTraversable(index), opened.isTraversable(index));
+                assertEquals(nodeGrid.getNeighbourMask(index), opened.getNeighbourMask(index));
+            }
+        }
+
+        assertEquals(new AStar(nodeGrid).findPath(0, 0, 270, 191), new AStar(opened).findPath(0, 0, 270, 191));
+    }
+
+    @Test
+    void testOpenInvalidFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("invalid.grid");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> NodeGrid.open(file));
+
+        //corrupt section counts in a valid header
+        Path grid = directory.resolve("basic.grid");
+        nodeGrid.save(grid);
+        byte[] content = Files.readAllBytes(grid);
+        for(int sectionCount : new int[]{-1, Integer.MAX_VALUE, content.length / 24}){
+            ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(16, sectionCount);
+            Files.write(file, content);
+
+            assertThrows(IOException.class, () -> NodeGrid.open(file));
+        }
+    }
+
+    @Test
+    void testWeightedGrid(@TempDir Path directory) throws IOException {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFFFFFF);
+        image.setRGB(1, 0, 0x00FF00);
+        image.setRGB(2, 0, 0x0000FF);
+
+        Map<Integer, Integer> costs = new HashMap<>();
+        costs.put(0xFFFFFFFF, 1);
+        costs.put(0xFF00FF00, 3);
+        NodeGrid grid = new NodeGrid(image, TerrainCosts.palette(costs));
+
+        assertTrue(grid.isWeighted());
+        assertEquals(1, grid.getNode(0, 0).getCost());
+        assertEquals(3, grid.getNode(1, 0).getCost());
+        assertFalse(grid.getNode(2, 0).isTraversable());
+        assertFalse(grid.getNode(0, 1).isTraversable());
+        assertEquals(1, grid.getMinimumCost());
+        assertEquals(1, grid.getNode(0, 0).getNeighbours().size());
+
+        //the costs are saved with the grid
+        Path file = directory.resolve("weighted.grid");
+        grid.save(file);
+        NodeGrid opened = NodeGrid.open(file);
+
+        assertTrue(opened.isWeighted());
+        assertEquals(3, opened.getNode(1, 0).getCost());
+        assertFalse(opened.getNode(2, 0).isTraversable());
+        assertFalse(nodeGrid.isWeighted());
+    }
+
+    @Test
+    void testInvalidTerrainCost() {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+
+        assertThrows(IllegalArgumentException.class, () -> new NodeGrid(image, rgb -> 256));
+    }
+
+    @Test
+    void testNeighbourMasks() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        //corners only see the three neighbours inside of the grid
+        assertEquals(0b11010000, grid.getNeighbourMask(grid.index(0, 0)));
+        assertEquals(0b01101000, grid.getNeighbourMask(grid.index(99, 0)));
+        assertEquals(0b00010110, grid.getNeighbourMask(grid.index(0, 99)));
+        assertEquals(0b00001011, grid.getNeighbourMask(grid.index(99, 99)));
+
+        //borders see five
+        assertEquals(0b11111000, grid.getNeighbourMask(grid.index(50, 0)));
+        assertEquals(0b00011111, grid.getNeighbourMask(grid.index(50, 99)));
+        assertEquals(0b11010110, grid.getNeighbourMask(grid.index(0, 50)));
+        assertEquals(0b01101011, grid.getNeighbourMask(grid.index(99, 50)));
+
+        assertEquals(0b11111111, grid.getNeighbourMask(grid.index(50, 50)));
+        assertEquals(0b11111111, grid.getNeighbourMask(grid.index(1, 1)));
+        assertEquals(0b11111111, grid.getNeighbourMask(grid.index(98, 98)));
+    }
+
+    @Test
+    void testNeighbourMasksMatchTraversability() throws IOException {
+        for (String image : new String[]{"midLine.png", "prison.png", "abstractArt.png"}) {
+            NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/" + image)));
+
+            for (int y = 0; y < grid.getHeight(); y++) {
+                for (int x = 0; x < grid.getWidth(); x++) {
+                    assertEquals(expectedNeighbourMask(grid, x, y), grid.getNeighbourMask(grid.index(x, y)), image + " " + x + " " + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSetTraversableUpdatesNeighbourMasks() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        //every neighbour loses the bit of the opposite direction
+        grid.setTraversable(50, 50, false);
+        assertEquals(0b11111111 & ~(1 << 7), grid.getNeighbourMask(grid.index(49, 49)));
+        assertEquals(0b11111111 & ~(1 << 6), grid.getNeighbourMask(grid.index(50, 49)));
+        assertEquals(0b11111111 & ~(1 << 5), grid.getNeighbourMask(grid.index(51, 49)));
+        assertEquals(0b11111111 & ~(1 << 4), grid.getNeighbourMask(grid.index(49, 50)));
+        assertEquals(0b11111111 & ~(1 << 3), grid.getNeighbourMask(grid.index(51, 50)));
+        assertEquals(0b11111111 & ~(1 << 2), grid.getNeighbourMask(grid.index(49, 51)));
+        assertEquals(0b11111111 & ~(1 << 1), grid.getNeighbourMask(grid.index(50, 51)));
+        assertEquals(0b11111111 & ~1, grid.getNeighbourMask(grid.index(51, 51)));
+
+        //the mask of the cell itself describes its neighbours and stays the same
+        assertEquals(0b11111111, grid.getNeighbourMask(grid.index(50, 50)));
+        assertEquals(0b11111111, grid.getNeighbourMask(grid.index(52, 50)));
+
+        grid.setTraversable(50, 50, true);
+        for (int y = 48; y <= 52; y++) {
+            for (int x = 48; x <= 52; x++) {
+                assertEquals(0b11111111, grid.getNeighbourMask(grid.index(x, y)));
+            }
+        }
+
+        //a blocked corner only touches the neighbours inside of the grid
+        grid.setTraversable(0, 0, false);
+        assertEquals(0b11111000 & ~(1 << 3), grid.getNeighbourMask(grid.index(1, 0)));
+        assertEquals(0b11010110 & ~(1 << 1), grid.getNeighbourMask(grid.index(0, 1)));
+        assertEquals(0b11111111 & ~1, grid.getNeighbourMask(grid.index(1, 1)));
+
+        //the bits of neighbouring cells in the same and the next word of the bit set stay untouched
+        grid.setTraversable(63, 0, false);
+        assertFalse(grid.isTraversable(grid.index(63, 0)));
+        assertTrue(grid.isTraversable(grid.index(62, 0)));
+        assertTrue(grid.isTraversable(grid.index(64, 0)));
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                assertEquals(expectedNeighbourMask(grid, x, y), grid.getNeighbourMask(grid.index(x, y)), x + " " + y);
+            }
+        }
+    }
+
+    /**
+     * @return the neighbour mask of the cell computed from the traversability of its neighbours
+     */
+    private static int expectedNeighbourMask(NodeGrid grid, int x, int y) {
+        int mask = 0;
+        for (int d = 0; d < 8; d++) {
+            int neighbourX = x + NodeGrid.DIRECTION_X[d];
+            int neighbourY = y + NodeGrid.DIRECTION_Y[d];
+            if (neighbourX < 0 || neighbourY < 0 || neighbourX >= grid.getWidth() || neighbourY >= grid.getHeight()) continue;
+
+            if (grid.isTraversable(grid.index(neighbourX, neighbourY))) mask |= 1 << d;
+        }
+        return mask;
+    }
+
+    @Test
+    void testSetTraversable(@TempDir Path directory) throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        int version = grid.getVersion();
+
+        grid.setTraversable(5, 5, false);
+
+        assertFalse(grid.getNode(5, 5).isTraversable());
+        assertEquals(7, grid.getNode(4, 4).getNeighbours().size());
+        assertFalse(grid.getNode(6, 5).getNeighbours().contains(grid.getNode(5, 5)));
+        assertNotEquals(version, grid.getVersion());
+
+        grid.setTraversable(5, 5, true);
+        assertEquals(8, grid.getNode(4, 4).getNeighbours().size());
+
+        //memory mapped grids are read only
+        Path file = directory.resolve("empty.grid");
+        grid.save(file);
+        NodeGrid opened = NodeGrid.open(file);
+        assertThrows(UnsupportedOperationException.class, () -> opened.setTraversable(5, 5, false));
+    }
+
+    @Test
+    void testIsReachable() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        assertTrue(grid.isReachable(0, 0, 99, 99));
+
+        //a wall across the grid splits it into two components
+        for(int x = 0; x < 100; x++){
+            grid.setTraversable(x, 50, false);
+        }
+        assertFalse(grid.isReachable(0, 0, 99, 99));
+        assertTrue(grid.isReachable(0, 0, 99, 49));
+        assertFalse(grid.isReachable(0, 0, 0, 50));
+
+        //a diagonal gap connects them again
+        grid.setTraversable(10, 50, true);
+        assertTrue(grid.isReachable(0, 0, 99, 99));
+
+        assertThrows(IllegalArgumentException.class, () -> grid.isReachable(0, 0, 100, 100));
+    }
+
+    @Test
+    void testChangedCells() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        int version = grid.getVersion();
+
+        grid.setTraversable(3, 4, false);
+        //an unchanged cell is no change
+        grid.setTraversable(3, 4, false);
+        grid.setTraversable(10, 0, false);
+        grid.setTraversable(3, 4, true);
+
+        assertArrayEquals(new int[]{grid.index(3, 4), grid.index(10, 0), grid.index(3, 4)}, grid.getChangedCells(version, grid.getVersion()));
+        assertArrayEquals(new int[]{grid.index(10, 0)}, grid.getChangedCells(version + 1, version + 2));
+        assertEquals(0, grid.getChangedCells(grid.getVersion(), grid.getVersion()).length);
+
+        //the log only holds the last changes
+        for (int i = 0; i < NodeGrid.CHANGE_LOG_SIZE; i++) {
+            grid.setTraversable(0, 0, i % 2 == 1);
+        }
+        assertNull(grid.getChangedCells(version, grid.getVersion()));
+        assertEquals(NodeGrid.CHANGE_LOG_SIZE, grid.getChangedCells(version + 3, grid.getVersion()).length);
+    }
+
+    @Test
+    void testSearchContextPool() throws IOException, InterruptedException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+
+        SearchContext first = grid.acquireSearchContext();
+        SearchContext second = grid.acquireSearchContext();
+        assertNotSame(first, second);
+
+        grid.releaseSearchContext(first);
+        assertSame(first, grid.acquireSearchContext());
+        grid.releaseSearchContext(first);
+        grid.releaseSearchContext(second);
+
+        //a new thread for every search borrows the contexts of the searches before it
+        Set<SearchContext> contexts = ConcurrentHashMap.newKeySet();
+        for(int i = 0; i < 4; i++){
+            Thread thread = new Thread(() -> {
+                SearchContext context = grid.acquireSearchContext();
+                contexts.add(context);
+                grid.releaseSearchContext(context);
+            });
+            thread.start();
+            thread.join();
+        }
+        assertEquals(Collections.singleton(first), contexts);
+    }
+
+    @Test
+    void testSearchContextGenerations() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/midLine.png")));
+        NodeGrid fresh = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/midLine.png")));
+        int cells = grid.getWidth() * grid.getHeight();
+
+        //the searches share one context whose generation counter overflows after the second of them
+        grid.setSearchContextPoolSize(1);
+        SearchContext context = new SearchContext(cells, SearchContext.MAX_GENERATION - 2);
+        grid.releaseSearchContext(context);
+
+        int[][] queries = {{0, 0, 19, 19}, {19, 19, 0, 0}, {0, 19, 19, 0}, {5, 0, 19, 19}, {0, 0, 19, 19}, {19, 0, 0, 19}};
+        for (int[] query : queries) {
+            List<Node> path = new AStar(grid, false).findPath(query[0], query[1], query[2], query[3]);
+            List<Node> expected = new AStar(fresh, false).findPath(query[0], query[1], query[2], query[3]);
+
+            assertEquals(expected.size(), path.size());
+            for (int i = 0; i < path.size(); i++) {
+                assertEquals(expected.get(i).getX(), path.get(i).getX());
+                assertEquals(expected.get(i).getY(), path.get(i).getY());
+            }
+        }
+        assertSame(context, grid.acquireSearchContext());
+
+        //a reset of the grid only drops its idle contexts
+        grid.releaseSearchContext(context);
+        grid.reset();
+        assertNotSame(context, grid.acquireSearchContext());
+        assertEquals(1, grid.getSearchContextPoolSize());
+
+        //the cells of the last search read as unvisited after a reset
+        context.reset();
+        for (int i = 0; i < cells; i++) {
+            assertEquals(Long.MAX_VALUE, context.getCostToReach(i, true));
+            assertEquals(Long.MAX_VALUE, context.getCostToReach(i, false));
+            assertEquals(-1, context.getPredecessor(i, true));
+            assertEquals(-1, context.getPredecessor(i, false));
+            assertEquals(0, context.getStatus(i));
+        }
+
+        //values written right before the overflow are stale after it
+        context = new SearchContext(cells, SearchContext.MAX_GENERATION - 1);
+        context.reset();
+        context.setCostToReach(7, 1000, true);
+        context.setPredecessor(7, 6, false);
+        context.setStatus(7, 3);
+        assertEquals(1000, context.getCostToReach(7, true));
+        assertEquals(6, context.getPredecessor(7, false));
+        assertEquals(3, context.getStatus(7));
+
+        context.reset();
+        assertEquals(Long.MAX_VALUE, context.getCostToReach(7, true));
+        assertEquals(-1, context.getPredecessor(7, false));
+        assertEquals(0, context.getStatus(7));
+
+        //and so are values of the generation before
+        context.setStatus(8, 1);
+        context.reset();
+        assertEquals(0, context.getStatus(8));
+        assertEquals(0, context.getStatus(7));
+    }
+
+    @Test
+    void testSearchContextPoolSize() throws IOException {
+        NodeGrid grid = new NodeGrid(ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/empty.png")));
+        assertEquals(2, grid.getSearchContextPoolSize());
+
+        //a burst of searches only leaves the pool size idle contexts behind
+        List<SearchContext> burst = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            burst.add(grid.acquireSearchContext());
+        }
+        burst.forEach(grid::releaseSearchContext);
+        assertSame(burst.get(0), grid.acquireSearchContext());
+        assertSame(burst.get(1), grid.acquireSearchContext());
+        assertFalse(burst.contains(grid.acquireSearchContext()));
+
+        //without a pool every search gets a new context
+        grid.setSearchContextPoolSize(0);
+        SearchContext context = grid.acquireSearchContext();
+        grid.releaseSearchContext(context);
+        assertNotSame(context, grid.acquireSearchContext());
+
+        assertThrows(IllegalArgumentException.class, () -> grid.setSearchContextPoolSize(-1));
+    }
+
+}
@@ -0,0 +1,111 @@
+package xyz.GPSforLEGENDS;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterReaderTest {
+
+    // white, black, almost white, gray, transparent and half transparent white
+    private static final int[] COLORS = {0xFFFFFFFF, 0xFF000000, 0xFFFFFEFF, 0xFF808080, 0x00FFFFFF, 0x80FFFFFF};
+
+    @Test
+    void testIntRgb() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    void testIntArgb() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    void testIntBgr() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_INT_BGR);
+    }
+
+    @Test
+    void test3ByteBgr() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    void test4ByteAbgr() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_4BYTE_ABGR);
+    }
+
+    @Test
+    void testByteGray() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    @Test
+    void testByteIndexed() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_BYTE_INDEXED);
+    }
+
+    @Test
+    void testByteBinary() throws IOException {
+        assertSameAsGetRGB(BufferedImage.TYPE_BYTE_BINARY);
+    }
+
+    @Test
+    void testSubImage() {
+        //sub images share the raster of their parent and start at an offset in it
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY}) {
+            BufferedImage image = randomImage(type, 131, 77);
+            assertSameAsGetRGB(image.getSubimage(5, 3, 70, 61), "subimage of type " + type);
+        }
+    }
+
+    /**
+     * checks random pixels with a width that does not fill whole words of the bitset, and a real map
+     */
+    private static void assertSameAsGetRGB(int type) throws IOException {
+        assertSameAsGetRGB(randomImage(type, 67, 45), "random image of type " + type);
+
+        BufferedImage map = ImageIO.read(NodeGridTest.class.getResourceAsStream("resources/prison.png"));
+        BufferedImage converted = new BufferedImage(map.getWidth(), map.getHeight(), type);
+        //copied pixel by pixel, drawing the image would dither it into an indexed palette without pure white
+        converted.setRGB(0, 0, map.getWidth(), map.getHeight(), map.getRGB(0, 0, map.getWidth(), map.getHeight(), null, 0, map.getWidth()), 0, map.getWidth());
+        assertSameAsGetRGB(converted, "prison.png as type " + type);
+    }
+
+    private static void assertSameAsGetRGB(BufferedImage image, String message) {
+        ByteBuffer traversable = RasterReader.readTraversable(image);
+        int width = image.getWidth();
+        boolean anyTraversable = false;
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                boolean expected = image.getRGB(x, y) == -1;
+                boolean actual = (traversable.getLong((index >>> 6) << 3) & 1L << index) != 0;
+
+                assertEquals(expected, actual, message + " at " + x + " " + y);
+                anyTraversable |= expected;
+            }
+        }
+        //an image without any white pixel would not test anything
+        assertTrue(anyTraversable, message);
+    }
+
+    private static BufferedImage randomImage(int type, int width, int height) {
+        Random random = new Random(type);
+        BufferedImage image = new BufferedImage(width, height, type);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = random.nextInt(4) == 0 ? random.nextInt() : COLORS[random.nextInt(COLORS.length)];
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+}